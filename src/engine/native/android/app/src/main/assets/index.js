@@ -1,16 +1,110 @@
 window.document.addEventListener('DOMContentLoaded', () => {
   class androidIPC extends PROCEED.IPC {
-    constructor() {
+    /**
+     * @param {object} [options]
+     * @param {boolean} [options.messagePort] use the WebMessagePort offered by the native part instead of string IPC
+     * @param {boolean} [options.binary] hand binary data to the callbacks as ArrayBuffer instead of a Base64 string
+     */
+    constructor(options = {}) {
       super();
+      this.options = options;
+      this.outgoing = [];
+      this.port = null;
+      this.transfers = new Map();
       window.ipcReceive = this.ipcReceive.bind(this);
+      if (options.messagePort) {
+        window.addEventListener('message', this.openPort.bind(this));
+      }
     }
+    // the native part transfers one end of a WebMessageChannel after the page has loaded.
+    // messages of WebView.postWebMessage have no source window, window.postMessage of any script or frame has one
+    openPort(event) {
+      if (event.source !== null || (event.origin && event.origin !== window.location.origin)) return;
+      if (event.data !== 'proceed-ipc' || !event.ports || !event.ports[0]) return;
+      this.port = event.ports[0];
+      this.port.onmessage = (e) => this.portReceive(e.data);
+      this.port.postMessage('ready');
+    }
+    // messages emitted in the same tick are sent as one frame: [[taskID, taskName, args], ...]
     emit(message) {
-      window.Android.postToNative(JSON.stringify(message));
+      this.outgoing.push(message);
+      if (this.outgoing.length === 1) {
+        Promise.resolve().then(() => this.flush());
+      }
+    }
+    flush() {
+      const messages = this.outgoing;
+      this.outgoing = [];
+      const frame = JSON.stringify(messages.length === 1 ? messages[0] : messages);
+      if (this.port) {
+        this.port.postMessage(frame);
+      } else {
+        window.Android.postToNative(frame);
+      }
+    }
+    // 'B' + [taskID, meta, field] + '\n' + one char per byte, or a frame of messages
+    portReceive(data) {
+      if (data[0] !== 'B') {
+        this.ipcReceive(JSON.parse(data));
+        return;
+      }
+      const separator = data.indexOf('\n');
+      const [taskID, meta, field, seq, last] = JSON.parse(data.substring(1, separator));
+      const payload = data.substring(separator + 1);
+      if (seq !== undefined) {
+        this.receiveChunk(taskID, { seq, last, field, meta, data: payload }, true);
+        return;
+      }
+      meta[field] = this.options.binary ? androidIPC.toArrayBuffer(payload) : btoa(payload);
+      this.receive(taskID, [null, meta]);
+    }
+    // collects the chunks of a large response and acknowledges each, so the native part can send the next ones
+    receiveChunk(taskID, { seq, last, field, meta, data }, binary) {
+      if (seq === 0) {
+        this.transfers.set(taskID, { field, meta, binary, parts: [] });
+      }
+      const transfer = this.transfers.get(taskID);
+      if (!transfer) return;
+      transfer.parts.push(data);
+      this.emit([`${taskID}#ack${seq}`, 'chunk_ack', [taskID, seq]]);
+      if (!last) return;
+
+      this.transfers.delete(taskID);
+      const content = transfer.parts.join('');
+      if (transfer.binary) {
+        transfer.meta[transfer.field] = this.options.binary
+          ? androidIPC.toArrayBuffer(content)
+          : btoa(content);
+      } else {
+        transfer.meta[transfer.field] = this.options.binary
+          ? androidIPC.toArrayBuffer(atob(content))
+          : content;
+      }
+      this.receive(taskID, [null, transfer.meta]);
+    }
+    static toArrayBuffer(binaryString) {
+      const bytes = new Uint8Array(binaryString.length);
+      for (let i = 0; i < binaryString.length; i++) {
+        bytes[i] = binaryString.charCodeAt(i);
+      }
+      return bytes.buffer;
     }
+    // accepts a single message [taskID, args] or a frame of messages [[taskID, args], ...]
+    // chunks of a large response are sent as [taskID, null, chunk]
     ipcReceive(message) {
-      const [taskID, args] = message;
+      if (Array.isArray(message[0])) {
+        message.forEach((m) => this.ipcReceive(m));
+        return;
+      }
+      const [taskID, args, chunk] = message;
+      if (chunk) {
+        this.receiveChunk(taskID, chunk, false);
+        return;
+      }
+      // an error ends a running transfer
+      this.transfers.delete(taskID);
       this.receive(taskID, args);
     }
   }
-  PROCEED.init({}, new androidIPC());
+  PROCEED.init({}, new androidIPC({ messagePort: true }));
 });
@@ -1,17 +1,39 @@
 package org.proceedlabs.engine.android.FormatAPI.Interfaces;
 
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.IPC.Workload;
+import org.proceedlabs.engine.android.IPCTaskRegistry;
 import org.proceedlabs.engine.android.MainActivity;
 
 import org.json.JSONException;
 
-import java.io.IOException;
-
+/*
+ * the task names served by an IPCTask are declared by @IPCHandler on its handler methods,
+ * IPCTaskRegistry is generated from them at build time (see the processor module)
+ * */
 public abstract class IPCTask extends Task {
     public boolean selfHandlePermissions;       //set True in extending class, to self-handle Permissions. normally task a is not called by Main, if Permissions are not granted.
-    public String[] taskNames = {};
+    public boolean answersRequests = true;      //false for fire-and-forget tasks, they are not counted as in flight by the IPC metrics
+    public Workload workload = Workload.CPU;     //decides which thread pool serves the task, override getWorkload() to decide per request
+
+    public Workload getWorkload(NativeRequest req) {
+        return workload;
+    }
+
+    // identical concurrent requests of idempotent tasks are executed once, all of them receive the response (see SingleFlight)
+    public boolean isIdempotent(NativeRequest req) {
+        return false;
+    }
+
+    // requests with the same lane key are served one after another, in the order they arrived. null = no ordering
+    public String getLaneKey(NativeRequest req) throws JSONException {
+        return null;
+    }
 
-    public abstract void handle(NativeRequest req) throws JSONException, IOException;
+    // the IPCController dispatches through the registry, which calls the @IPCHandler methods directly
+    public void handle(NativeRequest req) throws Exception {
+        IPCTaskRegistry.dispatch(req);
+    }
 
     @Override
     public boolean checkPermissions(MainActivity main) {
@@ -1,5 +1,6 @@
 package org.proceedlabs.engine.android.FormatAPI.Interfaces;
 
+import org.proceedlabs.engine.android.IPCTaskRegistry;
 import org.proceedlabs.engine.android.MainActivity;
 import org.proceedlabs.engine.android.Utility.PermissionManager;
 
@@ -8,7 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 public abstract class Task {
-    public String[] requiredPermissions = {};
+    public String[] requiredPermissions = IPCTaskRegistry.getPermissions(getClass());     //declared by @RequiresPermissions
 
     public boolean checkPermissions(MainActivity main) {
         return PermissionManager.checkPermission(main, requiredPermissions);
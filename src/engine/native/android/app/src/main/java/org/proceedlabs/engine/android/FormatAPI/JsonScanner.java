@@ -0,0 +1,175 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONException;
+
+/*
+ * checks the syntax of JSON text and finds the bounds of its values, without decoding them
+ *
+ * used to pass JSON through the native part as it is (RawJSON, NativeRequest.getRawArgs()),
+ * a scan costs a fraction of building the JSONObject tree and allocates nothing
+ * */
+final class JsonScanner {
+    private static final int MAX_DEPTH = 512;
+    private final String json;
+    private int pos;
+
+    JsonScanner(String json) {
+        this.json = json;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    boolean atEnd() {
+        skipWhitespace();
+        return pos >= json.length();
+    }
+
+    // true (and consumed) if the next char is c
+    boolean consume(char c) {
+        skipWhitespace();
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    void expect(char c) throws JSONException {
+        if (!consume(c))
+            throw syntaxError("expected '" + c + "'");
+    }
+
+    // position of the next value
+    int skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+                break;
+            pos++;
+        }
+        return pos;
+    }
+
+    void skipValue() throws JSONException {
+        skipValue(0);
+    }
+
+    private void skipValue(int depth) throws JSONException {
+        if (skipWhitespace() >= json.length())
+            throw syntaxError("unexpected end");
+        switch (json.charAt(pos)) {
+            case '{':
+                if (depth == MAX_DEPTH)
+                    throw syntaxError("nested too deep");
+                pos++;
+                if (consume('}'))
+                    return;
+                do {
+                    skipWhitespace();
+                    if (pos >= json.length() || json.charAt(pos) != '"')
+                        throw syntaxError("expected a name");
+                    skipString();
+                    expect(':');
+                    skipValue(depth + 1);
+                } while (consume(','));
+                expect('}');
+                return;
+            case '[':
+                if (depth == MAX_DEPTH)
+                    throw syntaxError("nested too deep");
+                pos++;
+                if (consume(']'))
+                    return;
+                do {
+                    skipValue(depth + 1);
+                } while (consume(','));
+                expect(']');
+                return;
+            case '"':
+                skipString();
+                return;
+            case 't':
+                skipLiteral("true");
+                return;
+            case 'f':
+                skipLiteral("false");
+                return;
+            case 'n':
+                skipLiteral("null");
+                return;
+            default:
+                skipNumber();
+        }
+    }
+
+    private void skipString() throws JSONException {
+        pos++;
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"')
+                return;
+            if (c < 0x20)
+                throw syntaxError("control character in string");
+            if (c != '\\')
+                continue;
+            if (pos >= json.length())
+                break;
+            char escaped = json.charAt(pos++);
+            if (escaped == 'u') {
+                for (int i = 0; i < 4; i++) {
+                    if (pos >= json.length() || !isHexDigit(json.charAt(pos++)))
+                        throw syntaxError("invalid unicode escape");
+                }
+            } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                throw syntaxError("invalid escape");
+            }
+        }
+        throw syntaxError("unterminated string");
+    }
+
+    private void skipLiteral(String literal) throws JSONException {
+        if (!json.startsWith(literal, pos))
+            throw syntaxError("unexpected character");
+        pos += literal.length();
+    }
+
+    // -? (0 | [1-9][0-9]*) (.[0-9]+)? ([eE][+-]?[0-9]+)?
+    private void skipNumber() throws JSONException {
+        if (pos < json.length() && json.charAt(pos) == '-')
+            pos++;
+        if (pos < json.length() && json.charAt(pos) == '0')
+            pos++;
+        else if (skipDigits() == 0)
+            throw syntaxError("unexpected character");
+        if (pos < json.length() && json.charAt(pos) == '.') {
+            pos++;
+            if (skipDigits() == 0)
+                throw syntaxError("digits expected");
+        }
+        if (pos < json.length() && (json.charAt(pos) == 'e' || json.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < json.length() && (json.charAt(pos) == '+' || json.charAt(pos) == '-'))
+                pos++;
+            if (skipDigits() == 0)
+                throw syntaxError("digits expected");
+        }
+    }
+
+    // ASCII only, Character.digit also accepts e.g. fullwidth digits
+    private static boolean isHexDigit(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9')
+            pos++;
+        return pos - start;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + pos);
+    }
+}
@@ -4,6 +4,13 @@ import org.proceedlabs.engine.android.MainActivity;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /*
  * This class represents a Request, send by the universal part to the native part.
@@ -11,28 +18,142 @@ import org.json.JSONException;
  *
  * a NativeRequest is needed to create a NativeResponse
  *
+ * a long message only has its header (taskID, taskName) read and the syntax of its args checked (JsonScanner),
+ * the args are decoded on the first call of getArgs(). Rejected requests never build a JSON tree.
+ * short messages are decoded right away, a scan would only add to the decode of their few args.
+ * the messages of a frame are read the same way, in place, whatever their length
+ *
+ * an optional fourth element holds request options: [taskID, taskName, args, {timeout: ms}]
+ * a request with a timeout is cancelled when it has not been answered in time.
+ * handlers register cleanup with onCancel() (release sensors, unregister routes, ...), responses after a cancellation are dropped
+ *
  * */
 public class NativeRequest {
     //
     private static long nextID = 0;
+    private static final int MAX_CONSOLE_LENGTH = 200;
+    private static final int HEADER_FIRST_MIN_LENGTH = 1024;
 
+    private String message;
     private JSONArray originalMessage;
-    private JSONArray args;
+    private volatile JSONArray args;
     private MainActivity context;
     private long internalID;
     private String taskID;
     private String taskName;
+    private final long receivedAt = System.nanoTime();
+    private final AtomicBoolean answered = new AtomicBoolean();
+    private volatile long deadline;     // System.nanoTime(), 0 = no deadline
+    private volatile String cancelReason;
+    private List<Runnable> cancelListeners;
+    private volatile boolean keptOpen;
 
     //extracts necessary information as early as possible to detect an error
     public NativeRequest(String message, MainActivity context) throws JSONException {
-        this.originalMessage = new JSONArray(message);
+        this.message = message;
+        if (message.length() < HEADER_FIRST_MIN_LENGTH) {
+            this.originalMessage = new JSONArray(message);
+            this.args = originalMessage.getJSONArray(2);
+            this.taskID = originalMessage.getString(0);
+            this.taskName = originalMessage.getString(1).toLowerCase();
+            readOptions(originalMessage.optJSONObject(3));
+        } else {
+            JsonScanner scanner = new JsonScanner(message);
+            readHeader(scanner, message);
+            if (!scanner.atEnd())
+                throw new JSONException("unexpected text after the message at character " + scanner.position());
+        }
+        this.context = context;
+        internalID = nextID++;
+    }
+
+    // a message of a frame, its header is read in place so the frame is scanned only once
+    private NativeRequest(String frame, JsonScanner scanner, MainActivity context) throws JSONException {
+        int start = scanner.skipWhitespace();
+        readHeader(scanner, frame);
+        this.message = frame.substring(start, scanner.position());
+        this.context = context;
+        internalID = nextID++;
+    }
+
+    public NativeRequest(JSONArray message, MainActivity context) throws JSONException {
+        this.originalMessage = message;
         this.args = originalMessage.getJSONArray(2);
         this.taskID = originalMessage.getString(0);
         this.taskName = originalMessage.getString(1).toLowerCase();
+        readOptions(originalMessage.optJSONObject(3));
         this.context = context;
         internalID = nextID++;
     }
 
+    // scans [taskID, taskName, args, options?] of the message at the scanner, the args are skipped without being decoded
+    private void readHeader(JsonScanner scanner, String text) throws JSONException {
+        scanner.expect('[');
+        taskID = readText(scanner, text);
+        scanner.expect(',');
+        taskName = readText(scanner, text).toLowerCase();
+        scanner.expect(',');
+        if (scanner.skipWhitespace() >= text.length() || text.charAt(scanner.position()) != '[')
+            throw new JSONException("args of " + taskName + " are not an array");
+        scanner.skipValue();
+        if (scanner.consume(',')) {
+            int start = scanner.skipWhitespace();
+            scanner.skipValue();
+            if (text.charAt(start) == '{')
+                readOptions(new JSONObject(text.substring(start, scanner.position())));
+        }
+        scanner.expect(']');
+    }
+
+    // a string without its quotes, other values (e.g. a numeric taskID) as their JSON text
+    private static String readText(JsonScanner scanner, String text) throws JSONException {
+        int start = scanner.skipWhitespace();
+        scanner.skipValue();
+        String raw = text.substring(start, scanner.position());
+        if (!raw.startsWith("\""))
+            return raw;
+        return raw.indexOf('\\') < 0 ? raw.substring(1, raw.length() - 1) : (String) new JSONTokener(raw).nextValue();
+    }
+
+    private void readOptions(JSONObject options) {
+        if (options != null)
+            setTimeout(options.optLong("timeout", 0));
+    }
+
+    private void setTimeout(long timeoutMs) {
+        if (timeoutMs > 0)
+            deadline = receivedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    /*
+     * a frame bundles several messages in one bridge crossing: [[taskID, taskName, args], [taskID, taskName, args], ...]
+     * a single message starts with its taskID (a string), a frame with a nested array
+     * */
+    public static boolean isFrame(String message) {
+        for (int i = message.indexOf('[') + 1; i > 0 && i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (!Character.isWhitespace(c))
+                return c == '[';
+        }
+        return false;
+    }
+
+    // the frame is only scanned, the args of its messages are decoded on demand like those of a long message
+    public static List<NativeRequest> fromFrame(String frame, MainActivity context) throws JSONException {
+        List<NativeRequest> requests = new ArrayList<>();
+        JsonScanner scanner = new JsonScanner(frame);
+        scanner.expect('[');
+        if (!scanner.consume(']')) {
+            do {
+                requests.add(new NativeRequest(frame, scanner, context));
+            } while (scanner.consume(','));
+            scanner.expect(']');
+        }
+        if (!scanner.atEnd())
+            throw new JSONException("unexpected text after the frame at character " + scanner.position());
+        return requests;
+    }
+
     public long getInternalID() {
         return internalID;
     }
@@ -45,25 +166,144 @@ public class NativeRequest {
         return taskName.toString();
     }
 
-    public JSONArray getArgs() {
+    // decoded on the first call, a decode error is passed on to the handler, the args are never replaced
+    public JSONArray getArgs() throws JSONException {
+        if (args == null) {
+            synchronized (this) {
+                if (args == null)
+                    args = new JSONArray(message).getJSONArray(2);
+            }
+        }
         return args;
     }
 
+    /*
+     * the args as JSON text, in the form they were sent in, without decoding them:
+     * a large value (e.g. the body of a "respond") is handed on as it is, strings are still quoted
+     * */
+    public String[] getRawArgs() throws JSONException {
+        List<String> rawArgs = new ArrayList<>();
+        if (message == null) {
+            JSONArray args = getArgs();
+            for (int i = 0; i < args.length(); i++) {
+                Object value = args.opt(i);
+                rawArgs.add(value instanceof String ? JSONObject.quote((String) value) : value == null ? "null" : value.toString());
+            }
+            return rawArgs.toArray(new String[0]);
+        }
+        // [taskID, taskName, [args...], options?]
+        JsonScanner scanner = new JsonScanner(message);
+        scanner.expect('[');
+        scanner.skipValue();
+        scanner.expect(',');
+        scanner.skipValue();
+        scanner.expect(',');
+        scanner.expect('[');
+        if (scanner.consume(']'))
+            return new String[0];
+        do {
+            int start = scanner.skipWhitespace();
+            scanner.skipValue();
+            rawArgs.add(message.substring(start, scanner.position()));
+        } while (scanner.consume(','));
+        scanner.expect(']');
+        return rawArgs.toArray(new String[0]);
+    }
+
+    // System.nanoTime() when the request arrived in the native part
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    // true only for the first response to this request
+    public boolean markAnswered() {
+        return answered.compareAndSet(false, true);
+    }
+
+    // System.nanoTime() until the request has to be answered, 0 = no deadline
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long getRemainingMillis() {
+        if (deadline == 0)
+            return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    // true only for the first cancellation, runs the cancel listeners on the calling thread
+    public boolean cancel(String reason) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelReason != null)
+                return false;
+            cancelReason = reason;
+            listeners = cancelListeners;
+            cancelListeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return true;
+    }
+
+    // runs right away if the request is already cancelled
+    public void onCancel(Runnable listener) {
+        synchronized (this) {
+            if (cancelReason == null) {
+                if (cancelListeners == null)
+                    cancelListeners = new ArrayList<>(1);
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    // the request is answered more than once (served paths, NFC scanning), it stays cancellable after its first response
+    public void keepOpen() {
+        keptOpen = true;
+    }
+
+    public boolean isKeptOpen() {
+        return keptOpen;
+    }
+
     public MainActivity getContext() {
         return context;
     }
 
     public String getConsoleString() {
-        String msg = "<- " + internalID + "\t" + taskName; //todo: refactor
-        msg += "(" + getArgs().toString() + ")";
-        return msg;
+        return "<- " + internalID + "\t" + taskName + "(" + getTruncatedMessage() + ")";
     }
 
     public String toString() {
-        return originalMessage.toString();
+        return message != null ? message : originalMessage.toString();
     }
 
     public String toConsoleString() {
-        return "<- " + getInternalID() + " \t" + taskName + " - " + getArgs();
+        return "<- " + getInternalID() + " \t" + taskName + " - " + getTruncatedMessage();
+    }
+
+    // the raw message, without re-serializing the args
+    private String getTruncatedMessage() {
+        String raw = toString();
+        if (raw.length() <= MAX_CONSOLE_LENGTH)
+            return raw;
+        return raw.substring(0, MAX_CONSOLE_LENGTH) + "... (" + raw.length() + " chars)";
     }
 }
@@ -2,8 +2,10 @@ package org.proceedlabs.engine.android.FormatAPI;
 
 import android.content.Context;
 
+import org.proceedlabs.engine.android.IPC.ChunkedTransfer;
 import org.proceedlabs.engine.android.Utility.Base64Util;
 import org.proceedlabs.engine.android.Utility.ExifExtractor;
+import org.proceedlabs.engine.android.Utility.FileIO;
 import org.proceedlabs.engine.android.Utility.ImageCompression;
 
 import org.json.JSONArray;
@@ -11,6 +13,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 
 /*
  * This class represents a Response, send by the native part to the universal part.
@@ -18,23 +22,18 @@ import java.io.File;
  *
  * a NativeRequest is needed to create a NativeResponse
  *
+ * the args are kept as they are put and written as [taskID, [null, ...args]] by getMessage(),
+ * straight into the buffer of a ResponseWriter
+ *
  * */
 
 public class NativeResponse {
     private NativeRequest req;
-    private JSONArray response;
-    private JSONArray args;
-
-
-
-    private boolean isError;
+    private final ArrayList<Object> args = new ArrayList<>(2);
+    private String errorMessage;
 
     public NativeResponse(NativeRequest req) {
         this.req = req;
-        response = new JSONArray();
-        response.put(req.getTaskID());
-        args = new JSONArray().put(null); // JSONArray("[null]");
-        response.put(args);
     }
 
     public void send(JSONArray arr) {
@@ -52,21 +51,22 @@ public class NativeResponse {
     }
 
     public void sendError(String errorMessage) {
-        try {
-            response.put(1, new JSONArray().put(errorMessage));
-        } catch (JSONException e) {
-        }
-        isError = true;
+        setError(errorMessage);
         req.getContext().ipcController.sendIPC(this);
     }
 
+    public NativeResponse setError(String errorMessage) {
+        this.errorMessage = errorMessage;
+        return this;
+    }
+
     public NativeResponse put(JSONArray arr) {
-        args.put(arr);
+        args.add(arr);
         return this;
     }
 
     public NativeResponse put(JSONObject obj) {
-        args.put(obj);
+        args.add(obj);
         return this;
     }
 
@@ -76,7 +76,7 @@ public class NativeResponse {
     }
 
     public NativeResponse put(String str) {
-        args.put(str);
+        args.add(str);
         return this;
     }
 
@@ -99,27 +99,73 @@ public class NativeResponse {
     public void send(File file, JSONObject parameter, FileCodec codec) {
         try {
             parameter.put("codec", codec.toString());
+            // stream large files, so they are never held in memory as a whole
+            if (ChunkedTransfer.shouldChunk(file)) {
+                ChunkedTransfer.start(this, file, parameter, "data");
+                return;
+            }
+            // raw bytes over the binary transport, the universal part receives them in parameter.data
+            if (req.getContext().ipcController.supportsBinary()) {
+                req.getContext().ipcController.sendBinaryIPC(this, parameter, "data", FileIO.readBytes(file));
+                return;
+            }
             parameter.put("data", Base64Util.getBase64FromPath(file));
             send(parameter);
+        } catch (IOException e) {
+            sendError("Error while reading the File: " + e.getMessage());
         } catch (JSONException e) {
-            try {
-                response.put(1, new JSONArray().put("FormatierungsFehler beim erstellen der Nachricht (zugroße Datei?)"));  //use sendError instead?
-                send();
-            } catch (JSONException ex) {
-            }
+            sendError("FormatierungsFehler beim erstellen der Nachricht (zugroße Datei?)");
+        }
+    }
+
+    public void sendChunk(JSONObject meta, String field, int seq, boolean last, byte[] data, int length) {
+        try {
+            req.getContext().ipcController.sendChunkIPC(this, meta, field, seq, last, data, length);
+        } catch (JSONException e) {
+            sendError("Error while creating a chunk of the response: " + e.getMessage());
         }
     }
 
+    // the same response for another request, used to answer identical requests that were executed only once
+    public NativeResponse copyFor(NativeRequest other) {
+        NativeResponse copy = new NativeResponse(other);
+        copy.args.addAll(args);
+        copy.errorMessage = errorMessage;
+        return copy;
+    }
+
+    public NativeRequest getRequest() {
+        return req;
+    }
+
+    public String getTaskID() {
+        return req.getTaskID();
+    }
+
     public String getMessage() {
-        return response.toString();
+        return writeMessage(ResponseWriter.get()).finish();
+    }
+
+    // [taskID, [errorMessage]] or [taskID, [null, ...args]]
+    private ResponseWriter writeMessage(ResponseWriter writer) {
+        writer.beginArray().value(req.getTaskID()).beginArray();
+        if (errorMessage != null) {
+            writer.value(errorMessage);
+        } else {
+            writer.nullValue();
+            for (Object arg : args) {
+                writer.value(arg);
+            }
+        }
+        return writer.endArray().endArray();
     }
 
     public String toConsoleString() {
-        return "-> " + req.getInternalID() + "  \t" + req.getTaskName() + " - " + response.optJSONArray(1);
+        return "-> " + req.getInternalID() + "  \t" + req.getTaskName() + " - " + getMessage();
     }
 
     public boolean isError() {
-        return isError;
+        return errorMessage != null;
     }
-    public enum FileCodec {JPG, ACC}
+    public enum FileCodec {JPG, ACC, BIN}
 }
@@ -0,0 +1,38 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONException;
+
+/*
+ * JSON text that is written into a message as it is, e.g. the JSON body of a client request for the universal part.
+ * of() checks the syntax once, instead of building a JSONObject that would only be serialized again right away
+ *
+ * put it into a JSONObject/JSONArray of a NativeResponse, the ResponseWriter splices it into the message
+ * */
+public final class RawJSON {
+    final String json;
+
+    private RawJSON(String json) {
+        this.json = json;
+    }
+
+    // throws if the text is not exactly one JSON value
+    public static RawJSON of(String json) throws JSONException {
+        JsonScanner scanner = new JsonScanner(json);
+        scanner.skipValue();
+        if (!scanner.atEnd())
+            throw new JSONException("unexpected text after the JSON value at character " + scanner.position());
+        return new RawJSON(escapeLineSeparators(json));
+    }
+
+    // valid JSON, but not a valid JavaScript expression for older WebViews (see ResponseWriter). they only occur in strings
+    private static String escapeLineSeparators(String json) {
+        if (json.indexOf('\u2028') < 0 && json.indexOf('\u2029') < 0)
+            return json;
+        return json.replace("\u2028", "\\u2028").replace("\u2029", "\\u2029");
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+}
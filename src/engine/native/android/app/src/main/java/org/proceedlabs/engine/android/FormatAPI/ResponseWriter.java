@@ -0,0 +1,203 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/*
+ * Writes the JSON of a response into a reusable char buffer, without building a JSONArray tree for the envelope.
+ * every thread has its own writer, its buffer is kept between responses unless it grew beyond MAX_RETAINED_CAPACITY
+ *
+ * the output is a valid JavaScript expression as well: U+2028 and U+2029 are escaped,
+ * older WebViews end a string literal at these characters
+ * */
+public class ResponseWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<ResponseWriter> writers = new ThreadLocal<ResponseWriter>() {
+        @Override
+        protected ResponseWriter initialValue() {
+            return new ResponseWriter();
+        }
+    };
+
+    private char[] buffer = new char[INITIAL_CAPACITY];
+    private int length;
+
+    // the writer of the current thread, empty
+    public static ResponseWriter get() {
+        ResponseWriter writer = writers.get();
+        writer.length = 0;
+        return writer;
+    }
+
+    // the written JSON, the writer can be used again afterwards
+    public String finish() {
+        String json = new String(buffer, 0, length);
+        length = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY)
+            buffer = new char[INITIAL_CAPACITY];
+        return json;
+    }
+
+    public ResponseWriter beginArray() {
+        separate();
+        append('[');
+        return this;
+    }
+
+    public ResponseWriter endArray() {
+        append(']');
+        return this;
+    }
+
+    public ResponseWriter beginObject() {
+        separate();
+        append('{');
+        return this;
+    }
+
+    public ResponseWriter endObject() {
+        append('}');
+        return this;
+    }
+
+    public ResponseWriter name(String name) {
+        separate();
+        string(name);
+        append(':');
+        return this;
+    }
+
+    public ResponseWriter nullValue() {
+        separate();
+        append("null");
+        return this;
+    }
+
+    public ResponseWriter value(String value) {
+        if (value == null)
+            return nullValue();
+        separate();
+        string(value);
+        return this;
+    }
+
+    // JSONObject, JSONArray, String, Number, Boolean or null, as written by org.json. RawJSON is written as it is
+    public ResponseWriter value(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            nullValue();
+        } else if (value instanceof RawJSON) {
+            separate();
+            append(((RawJSON) value).json);
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof JSONObject) {
+            JSONObject obj = (JSONObject) value;
+            beginObject();
+            for (Iterator<String> it = obj.keys(); it.hasNext(); ) {
+                String key = it.next();
+                name(key);
+                value(obj.opt(key));
+            }
+            endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray arr = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < arr.length(); i++) {
+                value(arr.opt(i));
+            }
+            endArray();
+        } else if (value instanceof Boolean) {
+            separate();
+            append((Boolean) value ? "true" : "false");
+        } else if (value instanceof Number) {
+            separate();
+            try {
+                append(JSONObject.numberToString((Number) value));
+            } catch (JSONException e) {
+                // NaN and Infinity have no JSON representation
+                append("null");
+            }
+        } else {
+            value(value.toString());
+        }
+        return this;
+    }
+
+    // values are separated by a comma, unless they are the first in an array/object or follow a name
+    private void separate() {
+        if (length == 0)
+            return;
+        char last = buffer[length - 1];
+        if (last != '[' && last != '{' && last != ':')
+            append(',');
+    }
+
+    private void string(String value) {
+        int count = value.length();
+        ensureCapacity(count + 2);
+        buffer[length++] = '"';
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                buffer[length++] = c;
+                continue;
+            }
+            // an escape sequence needs up to 6 chars instead of 1
+            ensureCapacity(count - i + 6);
+            buffer[length++] = '\\';
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer[length++] = c;
+                    break;
+                case '\n':
+                    buffer[length++] = 'n';
+                    break;
+                case '\r':
+                    buffer[length++] = 'r';
+                    break;
+                case '\t':
+                    buffer[length++] = 't';
+                    break;
+                case '\b':
+                    buffer[length++] = 'b';
+                    break;
+                case '\f':
+                    buffer[length++] = 'f';
+                    break;
+                default:
+                    buffer[length++] = 'u';
+                    buffer[length++] = HEX[(c >> 12) & 0xf];
+                    buffer[length++] = HEX[(c >> 8) & 0xf];
+                    buffer[length++] = HEX[(c >> 4) & 0xf];
+                    buffer[length++] = HEX[c & 0xf];
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+    }
+
+    private void append(String s) {
+        ensureCapacity(s.length());
+        s.getChars(0, s.length(), buffer, length);
+        length += s.length();
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional <= buffer.length)
+            return;
+        char[] grown = new char[Math.max(buffer.length * 2, length + additional)];
+        System.arraycopy(buffer, 0, grown, 0, length);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,10 @@
+package org.proceedlabs.engine.android.IPC;
+
+/*
+ * A transport that carries binary data without encoding it as Base64.
+ * all methods are called on the main thread
+ * */
+public interface BinaryTransport extends IPCTransport {
+    // header is a serialized [taskID, meta, field] array, the universal part puts the data into meta[field]
+    void sendBinary(String header, byte[] data, int offset, int length);
+}
@@ -0,0 +1,119 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Streams a file to the universal part in chunks of CHUNK_SIZE bytes.
+ * At most WINDOW chunks are unacknowledged at any time, the universal part acknowledges each chunk with the "chunk_ack" task.
+ * the heap used by a transfer is therefore bounded by WINDOW * CHUNK_SIZE, independent of the file size
+ *
+ * transfers run on their own threads, the sender blocks while the window is full
+ * and must not block the main thread, which delivers the chunks.
+ * at most MAX_QUEUED transfers wait for a thread, further transfers are answered with an error right away
+ * */
+public class ChunkedTransfer {
+    public static final int CHUNK_SIZE = 48 * 1024;     // multiple of 3, so the Base64 chunks can simply be concatenated
+    public static final int WINDOW = 4;
+    private static final long ACK_TIMEOUT_S = 10;
+    private static final int SENDERS = 2;
+    private static final int MAX_QUEUED = 16;
+
+    private static final ConcurrentHashMap<String, ChunkedTransfer> activeTransfers = new ConcurrentHashMap<>();
+    private static final IPCExecutors.Pool senders = new IPCExecutors.Pool("ipc-transfer", SENDERS, MAX_QUEUED);
+
+    private final NativeResponse res;
+    private final File file;
+    private final JSONObject meta;
+    private final String field;
+    private final Semaphore window = new Semaphore(WINDOW);
+
+    private ChunkedTransfer(NativeResponse res, File file, JSONObject meta, String field) {
+        this.res = res;
+        this.file = file;
+        this.meta = meta;
+        this.field = field;
+    }
+
+    public static boolean shouldChunk(File file) {
+        return file.length() > CHUNK_SIZE;
+    }
+
+    // the universal part receives meta with the whole file content in meta[field]
+    public static void start(NativeResponse res, File file, JSONObject meta, String field) {
+        ChunkedTransfer transfer = new ChunkedTransfer(res, file, meta, field);
+        activeTransfers.put(res.getTaskID(), transfer);
+        try {
+            senders.execute(transfer::run);
+        } catch (RejectedExecutionException e) {
+            activeTransfers.remove(res.getTaskID());
+            res.sendError("The native part is overloaded, the queue for chunked transfers is full");
+            return;
+        }
+        // wake a sender that waits for acknowledgements, it stops at the next chunk
+        res.getRequest().onCancel(transfer.window::release);
+    }
+
+    public static void acknowledge(String taskID) {
+        ChunkedTransfer transfer = activeTransfers.get(taskID);
+        if (transfer != null)
+            transfer.window.release();
+    }
+
+    // transfers = running and queued transfers, the other values are those of the sender pool
+    public static JSONObject getStats() throws JSONException {
+        JSONObject stats = senders.getStats();
+        stats.put("transfers", activeTransfers.size());
+        return stats;
+    }
+
+    private void run() {
+        long length = file.length();
+        long sent = 0;
+        int seq = 0;
+        byte[] buffer = new byte[CHUNK_SIZE];
+
+        try (InputStream in = new FileInputStream(file)) {
+            boolean last = false;
+            while (!last) {
+                if (res.getRequest().isCancelled())
+                    return;
+                if (!window.tryAcquire(ACK_TIMEOUT_S, TimeUnit.SECONDS)) {
+                    res.sendError("Chunked transfer aborted, the universal part stopped acknowledging chunks");
+                    return;
+                }
+                int read = readChunk(in, buffer);
+                sent += read;
+                last = read < CHUNK_SIZE || sent >= length;
+                res.sendChunk(seq == 0 ? meta : null, field, seq, last, buffer, read);
+                seq++;
+            }
+        } catch (IOException e) {
+            res.sendError("Error while reading the File: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeTransfers.remove(res.getTaskID());
+        }
+    }
+
+    private static int readChunk(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        int read;
+        while (offset < buffer.length && (read = in.read(buffer, offset, buffer.length - offset)) > 0) {
+            offset += read;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,19 @@
+package org.proceedlabs.engine.android.IPC;
+
+import android.webkit.WebView;
+
+/*
+ * The fallback transport, calls ipcReceive(frame) inside of the WebView
+ * */
+public class EvaluateJavascriptTransport implements IPCTransport {
+    private final WebView webView;
+
+    public EvaluateJavascriptTransport(WebView webView) {
+        this.webView = webView;
+    }
+
+    @Override
+    public void sendFrame(String frame) {
+        webView.evaluateJavascript("ipcReceive(" + frame + ");", null);
+    }
+}
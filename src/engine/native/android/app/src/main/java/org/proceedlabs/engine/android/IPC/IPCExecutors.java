@@ -0,0 +1,131 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * bounded thread pools for the IPC work, one per Workload
+ * a slow LONG_WAIT task can no longer starve cheap CPU or IO tasks
+ *
+ * a full pool rejects new work with a RejectedExecutionException, the caller answers with an error response
+ * */
+public class IPCExecutors {
+    private final Pool receive;
+    private final Pool cpu;
+    private final Pool io;
+    private final Pool longWait;
+
+    public IPCExecutors() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        receive = new Pool("ipc-receive", 1, 512);
+        cpu = new Pool("ipc-cpu", Math.max(2, cores), 512);
+        io = new Pool("ipc-io", 4, 256);
+        longWait = new Pool("ipc-wait", 16, 64);
+    }
+
+    /*
+     * parses the incoming messages and routes them, one after another in the order they arrived.
+     * a single thread, so requests enter their KeyedLanes in arrival order before the work fans out
+     * */
+    public void receive(Runnable runnable) throws RejectedExecutionException {
+        receive.execute(runnable);
+    }
+
+    public void dispatch(Runnable runnable) throws RejectedExecutionException {
+        cpu.execute(runnable);
+    }
+
+    public void execute(Workload workload, Runnable runnable) throws RejectedExecutionException {
+        get(workload).execute(runnable);
+    }
+
+    // runs after all earlier tasks with the same key, see KeyedLanes
+    public void execute(Workload workload, String key, Runnable runnable, Runnable onRejected) {
+        get(workload).lanes.execute(key, runnable, onRejected);
+    }
+
+    public Pool get(Workload workload) {
+        switch (workload) {
+            case IO:
+                return io;
+            case LONG_WAIT:
+                return longWait;
+            default:
+                return cpu;
+        }
+    }
+
+    public JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("receive", receive.getStats());
+        for (Workload workload : Workload.values()) {
+            stats.put(workload.name().toLowerCase(), get(workload).getStats());
+        }
+        return stats;
+    }
+
+    public static class Pool {
+        private final ThreadPoolExecutor executor;
+        private final int queueCapacity;
+        private final AtomicLong rejected = new AtomicLong();
+        private final KeyedLanes lanes;
+
+        Pool(String name, int threads, int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new NamedThreadFactory(name));
+            executor.allowCoreThreadTimeOut(true);
+            lanes = new KeyedLanes(this::execute);
+        }
+
+        public void execute(Runnable runnable) throws RejectedExecutionException {
+            try {
+                executor.execute(runnable);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        // 0 = idle, 1 = all threads busy and the queue is full
+        public double getSaturation() {
+            return (double) (executor.getActiveCount() + executor.getQueue().size()) / (executor.getMaximumPoolSize() + queueCapacity);
+        }
+
+        public JSONObject getStats() throws JSONException {
+            JSONObject stats = new JSONObject();
+            stats.put("active", executor.getActiveCount());
+            stats.put("threads", executor.getPoolSize());
+            stats.put("maxThreads", executor.getMaximumPoolSize());
+            stats.put("queued", executor.getQueue().size());
+            stats.put("queuedInLanes", lanes.getQueued());
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("completed", executor.getCompletedTaskCount());
+            stats.put("rejected", rejected.get());
+            stats.put("saturation", getSaturation());
+            return stats;
+        }
+    }
+
+    public static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        public NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, name + "-" + count.incrementAndGet());
+        }
+    }
+}
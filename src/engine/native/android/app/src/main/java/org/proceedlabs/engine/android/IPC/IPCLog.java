@@ -0,0 +1,192 @@
+package org.proceedlabs.engine.android.IPC;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Leveled log of the IPC traffic.
+ * Every call site checks isEnabled() first, so a disabled level costs one volatile read and allocates nothing.
+ * Enabled entries are written into a fixed-size binary ring buffer, task names and payloads are truncated
+ * to MAX_TASK_NAME and MAX_PAYLOAD chars, both come from the universal part.
+ * The ring buffer can be dumped on demand (ipc_log task), old entries are overwritten.
+ *
+ * record layout: [int length][long time][long internalID][byte direction][byte level][UTF-8 text]
+ * */
+public final class IPCLog {
+    public enum Level {OFF, ERROR, INFO}
+
+    public static final byte RECEIVED = 0;
+    public static final byte SENT = 1;
+
+    private static final String TAG = "PRC";
+    private static final int CAPACITY = 256 * 1024;
+    private static final int MAX_PAYLOAD = 256;
+    private static final int MAX_TASK_NAME = 64;
+    private static final int HEADER = 4 + 8 + 8 + 1 + 1;
+
+    private static volatile Level level = Level.ERROR;
+    private static volatile boolean mirrorToLogcat = false;
+
+    private static final byte[] ring = new byte[CAPACITY];
+    private static int head;        // next write position
+    private static int tail;        // oldest record
+    private static int used;        // bytes occupied by records
+
+    private IPCLog() {
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l != Level.OFF && l.ordinal() <= level.ordinal();
+    }
+
+    public static void setLevel(Level l, boolean logcat) {
+        level = l;
+        mirrorToLogcat = logcat;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    // callers check isEnabled(l) before, to avoid building the arguments
+    public static void log(Level l, byte direction, long internalID, String taskName, String payload) {
+        taskName = truncate(taskName, MAX_TASK_NAME);
+        write(l, direction, internalID, taskName, payload);
+        if (mirrorToLogcat || l == Level.ERROR) {
+            String text = (direction == RECEIVED ? "<- " : "-> ") + internalID + "\t" + taskName + " " + truncate(payload, MAX_PAYLOAD);
+            if (l == Level.ERROR)
+                Log.e(TAG, text);
+            else
+                Log.i(TAG, text);
+        }
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+    }
+
+    private static synchronized void write(Level l, byte direction, long internalID, String taskName, String payload) {
+        int textLength = utf8Length(taskName, taskName.length()) + 1 + utf8Length(payload, Math.min(payload.length(), MAX_PAYLOAD));
+        int length = HEADER + textLength;
+        // the eviction below could never make room for it
+        if (length > CAPACITY)
+            return;
+
+        // drop the oldest records until the new one fits
+        while (CAPACITY - used < length) {
+            int oldLength = readInt(tail);
+            tail = (tail + oldLength) % CAPACITY;
+            used -= oldLength;
+        }
+
+        int pos = head;
+        pos = putInt(pos, length);
+        pos = putLong(pos, System.currentTimeMillis());
+        pos = putLong(pos, internalID);
+        pos = put(pos, direction);
+        pos = put(pos, (byte) l.ordinal());
+        pos = putUtf8(pos, taskName, taskName.length());
+        pos = put(pos, (byte) ' ');
+        pos = putUtf8(pos, payload, Math.min(payload.length(), MAX_PAYLOAD));
+        head = pos;
+        used += length;
+    }
+
+    public static synchronized void clear() {
+        head = 0;
+        tail = 0;
+        used = 0;
+    }
+
+    // oldest entry first
+    public static synchronized JSONArray dump() throws JSONException {
+        JSONArray entries = new JSONArray();
+        int pos = tail;
+        int remaining = used;
+        while (remaining > 0) {
+            int length = readInt(pos);
+            int textLength = length - HEADER;
+            byte[] text = new byte[textLength];
+            for (int i = 0; i < textLength; i++) {
+                text[i] = ring[(pos + HEADER + i) % CAPACITY];
+            }
+            JSONObject entry = new JSONObject();
+            entry.put("time", readLong((pos + 4) % CAPACITY));
+            entry.put("id", readLong((pos + 12) % CAPACITY));
+            entry.put("direction", ring[(pos + 20) % CAPACITY] == RECEIVED ? "<-" : "->");
+            entry.put("level", Level.values()[ring[(pos + 21) % CAPACITY]].name());
+            entry.put("text", new String(text, StandardCharsets.UTF_8));
+            entries.put(entry);
+            pos = (pos + length) % CAPACITY;
+            remaining -= length;
+        }
+        return entries;
+    }
+
+    private static int utf8Length(String s, int chars) {
+        int length = 0;
+        for (int i = 0; i < chars; i++) {
+            char c = s.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+
+    // surrogate pairs are written as two 3-byte sequences, good enough for a debug log
+    private static int putUtf8(int pos, String s, int chars) {
+        for (int i = 0; i < chars; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                pos = put(pos, (byte) c);
+            } else if (c < 0x800) {
+                pos = put(pos, (byte) (0xc0 | (c >> 6)));
+                pos = put(pos, (byte) (0x80 | (c & 0x3f)));
+            } else {
+                pos = put(pos, (byte) (0xe0 | (c >> 12)));
+                pos = put(pos, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                pos = put(pos, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return pos;
+    }
+
+    private static int put(int pos, byte b) {
+        ring[pos] = b;
+        return (pos + 1) % CAPACITY;
+    }
+
+    private static int putInt(int pos, int v) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            pos = put(pos, (byte) (v >> shift));
+        }
+        return pos;
+    }
+
+    private static int putLong(int pos, long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            pos = put(pos, (byte) (v >> shift));
+        }
+        return pos;
+    }
+
+    private static int readInt(int pos) {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            v = (v << 8) | (ring[(pos + i) % CAPACITY] & 0xff);
+        }
+        return v;
+    }
+
+    private static long readLong(int pos) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (ring[(pos + i) % CAPACITY] & 0xff);
+        }
+        return v;
+    }
+}
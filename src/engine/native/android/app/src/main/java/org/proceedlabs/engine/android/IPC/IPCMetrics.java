@@ -0,0 +1,142 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * latency and throughput of the IPC per task name
+ *
+ * queueWait      received by the native part -> handler started
+ * handler        synchronous part of the handler (async tasks respond later)
+ * serialization  building the message of a response
+ * endToEnd       received by the native part -> first response handed to the transport
+ *
+ * all times are recorded in log2-histograms (microsecond buckets), recording only touches a few atomics
+ * */
+public class IPCMetrics {
+    private final ConcurrentHashMap<String, TaskMetrics> tasks = new ConcurrentHashMap<>();
+
+    public TaskMetrics get(String taskName) {
+        TaskMetrics metrics = tasks.get(taskName);
+        if (metrics == null) {
+            TaskMetrics created = new TaskMetrics();
+            metrics = tasks.putIfAbsent(taskName, created);
+            if (metrics == null)
+                metrics = created;
+        }
+        return metrics;
+    }
+
+    // the histograms and totals, inFlight is a gauge of the requests in progress and is kept
+    public void reset() {
+        for (TaskMetrics metrics : tasks.values()) {
+            metrics.reset();
+        }
+    }
+
+    public JSONObject getSnapshot() throws JSONException {
+        JSONObject snapshot = new JSONObject();
+        for (Map.Entry<String, TaskMetrics> entry : tasks.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().toJSON());
+        }
+        return snapshot;
+    }
+
+    public static class TaskMetrics {
+        public final Histogram queueWait = new Histogram();
+        public final Histogram handler = new Histogram();
+        public final Histogram serialization = new Histogram();
+        public final Histogram endToEnd = new Histogram();
+        public final AtomicInteger inFlight = new AtomicInteger();
+        public final AtomicLong requests = new AtomicLong();
+        public final AtomicLong responses = new AtomicLong();
+        public final AtomicLong errors = new AtomicLong();
+
+        void reset() {
+            queueWait.reset();
+            handler.reset();
+            serialization.reset();
+            endToEnd.reset();
+            requests.set(0);
+            responses.set(0);
+            errors.set(0);
+        }
+
+        JSONObject toJSON() throws JSONException {
+            long requestCount = requests.get();
+            JSONObject json = new JSONObject();
+            json.put("requests", requestCount);
+            json.put("responses", responses.get());
+            json.put("inFlight", inFlight.get());
+            json.put("errors", errors.get());
+            json.put("errorRate", requestCount == 0 ? 0 : (double) errors.get() / requestCount);
+            json.put("queueWait", queueWait.toJSON());
+            json.put("handler", handler.toJSON());
+            json.put("serialization", serialization.toJSON());
+            json.put("endToEnd", endToEnd.toJSON());
+            return json;
+        }
+    }
+
+    // bucket i counts durations below 2^i microseconds
+    public static class Histogram {
+        private static final int BUCKETS = 40;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            if (nanos < 0)
+                return;
+            int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+            buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            count.incrementAndGet();
+            sumNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            }
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sumNanos.set(0);
+            maxNanos.set(0);
+        }
+
+        // upper bound of the bucket containing the given percentile, in ms
+        private double percentile(double p, long total) {
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return (1L << i) / 1000.0;
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            long total = count.get();
+            JSONObject json = new JSONObject();
+            json.put("count", total);
+            if (total == 0)
+                return json;
+            json.put("meanMs", sumNanos.get() / 1e6 / total);
+            json.put("p50Ms", percentile(0.5, total));
+            json.put("p90Ms", percentile(0.9, total));
+            json.put("p99Ms", percentile(0.99, total));
+            json.put("maxMs", maxNanos.get() / 1e6);
+            return json;
+        }
+    }
+}
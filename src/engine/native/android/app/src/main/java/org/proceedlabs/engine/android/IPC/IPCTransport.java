@@ -0,0 +1,12 @@
+package org.proceedlabs.engine.android.IPC;
+
+/*
+ * A channel that carries messages from the native part to the universal part.
+ * all methods are called on the main thread
+ *
+ * a transport that can carry raw bytes implements BinaryTransport, the others get binary data as Base64 inside a frame
+ * */
+public interface IPCTransport {
+    // frame is a serialized array of [taskID, args] messages
+    void sendFrame(String frame);
+}
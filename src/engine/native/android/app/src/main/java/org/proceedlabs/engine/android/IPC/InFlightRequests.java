@@ -0,0 +1,66 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * the requests that can still be cancelled, by taskID
+ * a request leaves when it is answered (unless it is kept open) or cancelled.
+ * requests with a deadline get a timer, which is removed together with the request
+ * */
+public class InFlightRequests {
+    private static final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, new IPCExecutors.NamedThreadFactory("ipc-deadline"));
+
+    static {
+        timers.setRemoveOnCancelPolicy(true);
+    }
+
+    private final ConcurrentHashMap<String, Entry> requests = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final NativeRequest req;
+        volatile ScheduledFuture<?> timer;
+
+        Entry(NativeRequest req) {
+            this.req = req;
+        }
+    }
+
+    public void register(NativeRequest req, Runnable onDeadline) {
+        Entry entry = new Entry(req);
+        requests.put(req.getTaskID(), entry);
+        if (req.getDeadline() != 0)
+            entry.timer = timers.schedule(onDeadline, req.getDeadline() - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public NativeRequest get(String taskID) {
+        Entry entry = requests.get(taskID);
+        return entry == null ? null : entry.req;
+    }
+
+    public void remove(NativeRequest req) {
+        Entry entry = requests.get(req.getTaskID());
+        if (entry == null || entry.req != req || !requests.remove(req.getTaskID(), entry))
+            return;
+        if (entry.timer != null)
+            entry.timer.cancel(false);
+    }
+
+    public List<NativeRequest> getAll() {
+        List<NativeRequest> all = new ArrayList<>(requests.size());
+        for (Entry entry : requests.values()) {
+            all.add(entry.req);
+        }
+        return all;
+    }
+
+    public int size() {
+        return requests.size();
+    }
+}
@@ -0,0 +1,95 @@
+package org.proceedlabs.engine.android.IPC;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Serial execution lanes on top of a shared thread pool.
+ * Tasks with the same key run one after another in the order they were submitted (read-your-writes per key),
+ * tasks with different keys run in parallel, unless their keys share one of the STRIPES lanes.
+ *
+ * a lane holds at most MAX_QUEUED tasks, further tasks and tasks the pool does not accept are rejected
+ * */
+public class KeyedLanes {
+    private static final int STRIPES = 16;
+    private static final int MAX_QUEUED = 128;
+
+    private final Lane[] lanes = new Lane[STRIPES];
+
+    public KeyedLanes(Executor executor) {
+        for (int i = 0; i < STRIPES; i++) {
+            lanes[i] = new Lane(executor);
+        }
+    }
+
+    // onRejected runs instead of task, if the lane or the pool is full
+    public void execute(String key, Runnable task, Runnable onRejected) {
+        lanes[(key.hashCode() & 0x7fffffff) % STRIPES].execute(task, onRejected);
+    }
+
+    public int getQueued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.size();
+        }
+        return queued;
+    }
+
+    private static class Lane {
+        private final Executor executor;
+        private final ArrayDeque<Runnable[]> queue = new ArrayDeque<>();
+        private boolean running;
+
+        Lane(Executor executor) {
+            this.executor = executor;
+        }
+
+        void execute(Runnable task, Runnable onRejected) {
+            synchronized (this) {
+                if (queue.size() >= MAX_QUEUED) {
+                    task = null;
+                } else {
+                    queue.add(new Runnable[]{task, onRejected});
+                    if (running)
+                        return;
+                    running = true;
+                }
+            }
+            if (task == null)
+                onRejected.run();
+            else
+                scheduleNext();
+        }
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        // hands the next task of this lane to the pool, the lane stays "running" until its queue is empty
+        private void scheduleNext() {
+            while (true) {
+                Runnable[] next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            next[0].run();
+                        } finally {
+                            scheduleNext();
+                        }
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    next[1].run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.proceedlabs.engine.android.IPC;
+
+import android.annotation.TargetApi;
+import android.net.Uri;
+import android.os.Build;
+import android.webkit.WebMessage;
+import android.webkit.WebMessagePort;
+import android.webkit.WebView;
+
+/*
+ * Transport over a WebMessageChannel, the universal part opts in by answering the handshake with READY.
+ *
+ * messages native -> universal:
+ *   "[...]"                      a frame of [taskID, args] messages, handed to ipcReceive without building JS code
+ *   "B" + header + "\n" + bytes   binary data, every char holds one byte (ISO-8859-1), converted to an ArrayBuffer by the universal part
+ *
+ * messages universal -> native are the same strings, which would otherwise be passed to Android.postToNative
+ * */
+@TargetApi(Build.VERSION_CODES.M)
+public class MessagePortTransport implements BinaryTransport {
+    public static final String HANDSHAKE = "proceed-ipc";
+    public static final String READY = "ready";
+    private static final char BINARY = 'B';
+
+    public interface Receiver {
+        void receive(String message);
+    }
+
+    private final WebMessagePort port;
+    private volatile boolean ready;
+
+    private MessagePortTransport(WebMessagePort port, Receiver receiver, Runnable onReady) {
+        this.port = port;
+        port.setWebMessageCallback(new WebMessagePort.WebMessageCallback() {
+            @Override
+            public void onMessage(WebMessagePort port, WebMessage message) {
+                String data = message.getData();
+                if (data == null)
+                    return;
+                if (!ready && data.equals(READY)) {
+                    ready = true;
+                    onReady.run();
+                    return;
+                }
+                receiver.receive(data);
+            }
+        });
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    // creates a channel and transfers one end to the loaded page, main thread only
+    public static MessagePortTransport open(WebView webView, Receiver receiver, Runnable onReady) {
+        WebMessagePort[] channel = webView.createWebMessageChannel();
+        MessagePortTransport transport = new MessagePortTransport(channel[0], receiver, onReady);
+        webView.postWebMessage(new WebMessage(HANDSHAKE, new WebMessagePort[]{channel[1]}), Uri.parse("*"));
+        return transport;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void close() {
+        ready = false;
+        port.close();
+    }
+
+    @Override
+    public void sendFrame(String frame) {
+        port.postMessage(new WebMessage(frame));
+    }
+
+    @Override
+    public void sendBinary(String header, byte[] data, int offset, int length) {
+        port.postMessage(new WebMessage(toBinaryMessage(header, data, offset, length)));
+    }
+
+    static String toBinaryMessage(String header, byte[] data, int offset, int length) {
+        StringBuilder message = new StringBuilder(header.length() + length + 2);
+        message.append(BINARY).append(header).append('\n');
+        for (int i = offset; i < offset + length; i++) {
+            message.append((char) (data[i] & 0xff));
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package org.proceedlabs.engine.android.IPC;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Single drain queue for all messages going to the universal part.
+ * Pending messages are delivered on the main thread as one frame per Choreographer frame,
+ * or as soon as MAX_BATCH_SIZE messages are waiting.
+ *
+ * no frames are rendered while the screen is off, so a delayed fallback drain keeps responses flowing in the background
+ * */
+public class ResponseScheduler {
+    public static final int MAX_BATCH_SIZE = 64;
+    private static final long FALLBACK_DELAY_MS = 20;
+
+    private volatile IPCTransport transport;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // serialized messages (String) and binary data (Binary), in the order they were enqueued
+    private final ConcurrentLinkedQueue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private volatile long batchStartedAt;
+
+    private final Runnable drain = this::drain;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> drain();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    // statistics
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private volatile long lastFlushLatencyNs;
+    private volatile long maxFlushLatencyNs;
+    private volatile long totalFlushLatencyNs;
+
+    public ResponseScheduler(IPCTransport transport) {
+        this.transport = transport;
+    }
+
+    public void setTransport(IPCTransport transport) {
+        this.transport = transport;
+    }
+
+    public IPCTransport getTransport() {
+        return transport;
+    }
+
+    private static final class Binary {
+        final String header;
+        final byte[] data;
+        final int offset;
+        final int length;
+
+        Binary(String header, byte[] data, int offset, int length) {
+            this.header = header;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // thread-safe, message is a serialized [taskID, args] response
+    public void enqueue(String message) {
+        add(message);
+    }
+
+    /*
+     * binary data keeps its place in the queue: messages enqueued before it are delivered first, later ones after it.
+     * the queue is drained without waiting for the next frame. a transport without binary support
+     * (e.g. after a page reload) gets the data as Base64 inside the frame
+     * */
+    public void enqueueBinary(String header, byte[] data, int offset, int length) {
+        add(new Binary(header, data, offset, length));
+        mainHandler.post(drain);
+    }
+
+    private void add(Object entry) {
+        pending.add(entry);
+        int depth = queueDepth.incrementAndGet();
+        if (depth > maxQueueDepth.get())
+            maxQueueDepth.set(depth);
+
+        if (scheduled.compareAndSet(false, true)) {
+            batchStartedAt = System.nanoTime();
+            mainHandler.post(scheduleFrame);
+            mainHandler.postDelayed(drain, FALLBACK_DELAY_MS);
+        } else if (depth % MAX_BATCH_SIZE == 0) {
+            mainHandler.post(drain);
+        }
+    }
+
+    /*
+     * the string form of a binary message, as the IPCController sends it without a binary transport
+     * [taskID, meta, field]             -> [taskID, [null, meta]] with Base64 data in meta[field]
+     * [taskID, meta, field, seq, last]  -> [taskID, null, {seq, last, field, meta, data}]
+     * */
+    static String toStringMessage(String header, byte[] data, int offset, int length) throws JSONException {
+        JSONArray parts = new JSONArray(header);
+        String encoded = Base64.encodeToString(data, offset, length, Base64.NO_WRAP);
+        if (parts.length() > 3) {
+            JSONObject chunk = new JSONObject();
+            chunk.put("seq", parts.getInt(3));
+            chunk.put("last", parts.getBoolean(4));
+            chunk.put("field", parts.getString(2));
+            chunk.put("meta", parts.opt(1) == null ? JSONObject.NULL : parts.opt(1));
+            chunk.put("data", encoded);
+            return new JSONArray().put(parts.get(0)).put(JSONObject.NULL).put(chunk).toString();
+        }
+        JSONObject meta = parts.getJSONObject(1);
+        meta.put(parts.getString(2), encoded);
+        return new JSONArray().put(parts.get(0)).put(new JSONArray().put(JSONObject.NULL).put(meta)).toString();
+    }
+
+    // main thread only
+    private void drain() {
+        mainHandler.removeCallbacks(drain);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        long startedAt = batchStartedAt;
+        scheduled.set(false);
+
+        int count = queueDepth.get();
+        if (count == 0)
+            return;
+
+        IPCTransport current = transport;
+        StringBuilder frame = new StringBuilder("[");
+        int inFrame = 0;
+        int taken = 0;
+        Object entry;
+        while (taken < count && (entry = pending.poll()) != null) {
+            taken++;
+            if (entry instanceof Binary) {
+                Binary binary = (Binary) entry;
+                if (current instanceof BinaryTransport) {
+                    // the messages before the binary data go first
+                    if (inFrame > 0)
+                        sendFrame(current, frame);
+                    inFrame = 0;
+                    ((BinaryTransport) current).sendBinary(binary.header, binary.data, binary.offset, binary.length);
+                    continue;
+                }
+                try {
+                    entry = toStringMessage(binary.header, binary.data, binary.offset, binary.length);
+                } catch (JSONException e) {
+                    Log.e("ResponseScheduler", "dropped binary data, invalid header " + binary.header, e);
+                    continue;
+                }
+            }
+            if (inFrame > 0)
+                frame.append(',');
+            frame.append(entry);
+            inFrame++;
+        }
+        queueDepth.addAndGet(-taken);
+        if (inFrame > 0)
+            sendFrame(current, frame);
+
+        long latency = System.nanoTime() - startedAt;
+        lastFlushLatencyNs = latency;
+        totalFlushLatencyNs += latency;
+        if (latency > maxFlushLatencyNs)
+            maxFlushLatencyNs = latency;
+        flushCount.incrementAndGet();
+        deliveredCount.addAndGet(taken);
+    }
+
+    // sends the frame and starts the next one in the same builder
+    private static void sendFrame(IPCTransport transport, StringBuilder frame) {
+        transport.sendFrame(frame.append(']').toString());
+        frame.setLength(1);
+        StartupMetrics.mark(StartupMetrics.Milestone.firstIpcReceive);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public JSONObject getStats() throws JSONException {
+        long flushes = flushCount.get();
+        JSONObject stats = new JSONObject();
+        stats.put("queueDepth", queueDepth.get());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        stats.put("flushes", flushes);
+        stats.put("delivered", deliveredCount.get());
+        stats.put("lastFlushLatencyMs", lastFlushLatencyNs / 1e6);
+        stats.put("maxFlushLatencyMs", maxFlushLatencyNs / 1e6);
+        stats.put("avgFlushLatencyMs", flushes == 0 ? 0 : totalFlushLatencyNs / 1e6 / flushes);
+        return stats;
+    }
+}
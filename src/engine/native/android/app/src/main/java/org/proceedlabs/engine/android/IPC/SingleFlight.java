@@ -0,0 +1,88 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Identical requests (same task name and args) of idempotent tasks share one execution.
+ * The first request (leader) is executed, requests arriving while it is in flight (followers) wait for its first response.
+ *
+ * a non-idempotent request on the same lane (e.g. a write to a table) closes the open flights of that lane,
+ * later reads start a new flight, so they see the write
+ * */
+public class SingleFlight {
+    private final Map<String, Flight> openFlights = new HashMap<>();
+    private final Map<NativeRequest, Flight> flightsByLeader = new HashMap<>();
+
+    private static class Flight {
+        final String key;
+        final String laneKey;
+        final List<NativeRequest> followers = new ArrayList<>();
+
+        Flight(String key, String laneKey) {
+            this.key = key;
+            this.laneKey = laneKey;
+        }
+    }
+
+    // the args as they were sent, a long request is not decoded to build its key
+    public static String getKey(NativeRequest req) throws JSONException {
+        StringBuilder key = new StringBuilder(req.getTaskName());
+        for (String arg : req.getRawArgs()) {
+            key.append('\u0000').append(arg);
+        }
+        return key.toString();
+    }
+
+    // true if the request joined a flight in progress and must not be executed
+    public synchronized boolean join(String key, String laneKey, NativeRequest req) {
+        Flight flight = openFlights.get(key);
+        if (flight != null) {
+            flight.followers.add(req);
+            return true;
+        }
+        flight = new Flight(key, laneKey);
+        openFlights.put(key, flight);
+        flightsByLeader.put(req, flight);
+        return false;
+    }
+
+    // called with the first response of a request, returns the followers that wait for it
+    public synchronized List<NativeRequest> complete(NativeRequest leader) {
+        if (flightsByLeader.isEmpty())
+            return Collections.emptyList();
+        Flight flight = flightsByLeader.remove(leader);
+        if (flight == null)
+            return Collections.emptyList();
+        if (openFlights.get(flight.key) == flight)
+            openFlights.remove(flight.key);
+        return flight.followers;
+    }
+
+    // requests arriving from now on do not join flights of this lane, the flights in progress still answer their followers
+    public synchronized void invalidate(String laneKey) {
+        Iterator<Flight> it = openFlights.values().iterator();
+        while (it.hasNext()) {
+            if (laneKey.equals(it.next().laneKey))
+                it.remove();
+        }
+    }
+
+    // the universal part has been reloaded, the leaders and their followers are not answered anymore
+    public synchronized void clear() {
+        openFlights.clear();
+        flightsByLeader.clear();
+    }
+
+    public synchronized int getOpenFlights() {
+        return openFlights.size();
+    }
+}
@@ -0,0 +1,61 @@
+package org.proceedlabs.engine.android.IPC;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * milestones of the cold start, in ms since the process has been started (since onCreate before Android 7)
+ *
+ * onCreate            MainActivity.onCreate
+ * webViewCreated      WebView constructed and the engine bundle requested
+ * pageStarted         the WebView started loading index.html
+ * pageFinished        index.html and its scripts have been loaded
+ * firstRequest        first message of the universal part reached the native part
+ * firstIpcReceive     first response frame handed to ipcReceive
+ * permissionsResolved the permission dialog has been answered (not set if nothing had to be requested)
+ *
+ * every milestone is only recorded once per process, firstIpcReceive is written to logcat (tag ColdStart)
+ * */
+public class StartupMetrics {
+    public enum Milestone {onCreate, webViewCreated, pageStarted, pageFinished, firstRequest, firstIpcReceive, permissionsResolved}
+
+    private static final long processStartedAt = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? Process.getStartElapsedRealtime() : -1;
+    private static final AtomicLongArray milestones = new AtomicLongArray(Milestone.values().length);
+
+    public static void mark(Milestone milestone) {
+        if (!milestones.compareAndSet(milestone.ordinal(), 0, SystemClock.elapsedRealtime()))
+            return;
+        if (milestone == Milestone.firstIpcReceive)
+            Log.i("ColdStart", "first ipcReceive after " + getMillis(milestone) + " ms, onCreate +" + (getMillis(milestone) - getMillis(Milestone.onCreate)) + " ms");
+    }
+
+    public static boolean isMarked(Milestone milestone) {
+        return milestones.get(milestone.ordinal()) != 0;
+    }
+
+    // -1 if the milestone has not been reached
+    public static long getMillis(Milestone milestone) {
+        long at = milestones.get(milestone.ordinal());
+        if (at == 0)
+            return -1;
+        long origin = processStartedAt >= 0 ? processStartedAt : milestones.get(Milestone.onCreate.ordinal());
+        return at - origin;
+    }
+
+    public static JSONObject getSnapshot() throws JSONException {
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("origin", processStartedAt >= 0 ? "process" : "onCreate");
+        for (Milestone milestone : Milestone.values()) {
+            if (isMarked(milestone))
+                snapshot.put(milestone.name(), getMillis(milestone));
+        }
+        return snapshot;
+    }
+}
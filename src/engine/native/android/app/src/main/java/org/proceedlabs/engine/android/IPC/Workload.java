@@ -0,0 +1,10 @@
+package org.proceedlabs.engine.android.IPC;
+
+/*
+ * the kind of work a task does, each kind is served by its own bounded thread pool (see IPCExecutors)
+ * */
+public enum Workload {
+    CPU,        // short, non-blocking work
+    IO,         // disk, SharedPreferences, system services
+    LONG_WAIT   // waits for hardware, the network or the user (media player, GPS, camera, server start)
+}
@@ -1,83 +1,342 @@
 package org.proceedlabs.engine.android;
 
-import android.util.Log;
+import android.util.Base64;
 
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.Task;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
-import org.proceedlabs.engine.android.NativeAPI.Capabilities.CapabilityController;
-import org.proceedlabs.engine.android.NativeAPI.Configuration;
-import org.proceedlabs.engine.android.NativeAPI.Console;
-import org.proceedlabs.engine.android.NativeAPI.Data;
-import org.proceedlabs.engine.android.NativeAPI.DeviceInfo.DeviceInfoController;
-import org.proceedlabs.engine.android.NativeAPI.Discovery;
-import org.proceedlabs.engine.android.NativeAPI.Server.ServerController;
+import org.proceedlabs.engine.android.IPC.IPCExecutors;
+import org.proceedlabs.engine.android.IPC.IPCLog;
+import org.proceedlabs.engine.android.IPC.IPCMetrics;
+import org.proceedlabs.engine.android.IPC.InFlightRequests;
+import org.proceedlabs.engine.android.IPC.SingleFlight;
+import org.proceedlabs.engine.android.IPC.Workload;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 public class IPCController extends Task {
-    private static HashMap<String, IPCTask> registeredTasks = new HashMap<>();
     MainActivity instance;
-    private IPCTask[] implementedIPCTasks = {
-            new CapabilityController(),
-            new DeviceInfoController(),
-            new Discovery(),
-            new ServerController(),
-            new Configuration(),
-            new Console(),
-            new Data(),
-            /// add IPCTasks here
-    };
+    public final IPCExecutors executors = new IPCExecutors();
+    public final IPCMetrics metrics = new IPCMetrics();
+    public final InFlightRequests inFlight = new InFlightRequests();
+    private final SingleFlight singleFlight = new SingleFlight();
+    // requests of tasks that need permissions wait while the permission dialog is open
+    private final List<NativeRequest> awaitingPermissions = new ArrayList<>();
+    private boolean permissionsPending;
 
+    /*
+     * the tasks are looked up in the generated IPCTaskRegistry and constructed on their first request,
+     * add IPCTasks by annotating their handler methods with @IPCHandler
+     * */
     public IPCController(MainActivity instance) {
         this.instance = instance;
-        for (IPCTask IPCTask : implementedIPCTasks) {
-            // get reqquired Permissions of each task
-            this.addPermission(IPCTask.requiredPermissions);
+        // the permissions of all tasks, declared by @RequiresPermissions
+        this.addPermission(IPCTaskRegistry.PERMISSIONS);
+    }
 
-            // map each served taskName to that task
-            for (String taskName : IPCTask.taskNames) {
-                registeredTasks.put(taskName, IPCTask);
-            }
+    /*
+     * route the messages of a frame in their order, routing only hands them to the pools.
+     * requests with the same lane key enter their lane in this order, see IPCExecutors.receive()
+     * */
+    public void receiveIPC(List<NativeRequest> requests) {
+        for (NativeRequest req : requests) {
+            receiveIPC(req);
         }
     }
 
     public void receiveIPC(NativeRequest req) {
-        Log.i("PRC", req.getConsoleString());
+        if (IPCLog.isEnabled(IPCLog.Level.INFO))
+            IPCLog.log(IPCLog.Level.INFO, IPCLog.RECEIVED, req.getInternalID(), req.getTaskName(), req.toString());
 
         //check if requested Task exists
-        IPCTask requestedIPCTask = registeredTasks.get(req.getTaskName());
+        IPCTask requestedIPCTask = IPCTaskRegistry.getTask(req.getTaskName());
+        IPCMetrics.TaskMetrics taskMetrics = metrics.get(getMetricsName(req));
+        taskMetrics.requests.incrementAndGet();
+        if (requestedIPCTask == null || requestedIPCTask.answersRequests)
+            taskMetrics.inFlight.incrementAndGet();
+
         if (requestedIPCTask == null) {
             new NativeResponse(req).sendError("The requested Task has not been implemented oder registered!");
             return;
         }
 
+        if (requestedIPCTask.requiredPermissions.length > 0 && awaitPermissions(req))
+            return;
+        route(requestedIPCTask, req);
+    }
+
+    private void route(IPCTask requestedIPCTask, NativeRequest req) {
         //check if Permission for Task ist granted by User
         if (!requestedIPCTask.checkPermissions(req.getContext())) {
             new NativeResponse(req).sendError("not all required Permissions are granted by User! Permissions are: " + Arrays.toString(requestedIPCTask.requiredPermissions));
             return;
         }
 
-        //try to serve requested Task
+        if (requestedIPCTask.answersRequests)
+            inFlight.register(req, () -> cancel(req, "timeout, the request has not been answered in time"));
+
+        //served by the pool of their workload, the receiving thread only routes
+        Workload workload = requestedIPCTask.getWorkload(req);
+        String laneKey;
+        String flightKey;
+        try {
+            laneKey = requestedIPCTask.getLaneKey(req);
+            flightKey = requestedIPCTask.isIdempotent(req) ? SingleFlight.getKey(req) : null;
+        } catch (JSONException e) {
+            new NativeResponse(req).sendError("Error while serving the Request:" + e.getMessage());
+            return;
+        }
+
+        //identical requests in flight share one execution
+        if (flightKey != null) {
+            if (singleFlight.join(flightKey, laneKey, req))
+                return;
+        } else if (laneKey != null) {
+            singleFlight.invalidate(laneKey);
+        }
+
+        if (laneKey != null) {
+            executors.execute(workload, laneKey, () -> serve(req),
+                    () -> new NativeResponse(req).sendError("The native part is overloaded, the queue for " + laneKey + " is full"));
+            return;
+        }
         try {
-            requestedIPCTask.handle(req);
+            executors.execute(workload, () -> serve(req));
+        } catch (RejectedExecutionException e) {
+            new NativeResponse(req).sendError("The native part is overloaded, the queue for " + workload + " tasks is full");
+        }
+    }
+
+    /*
+     * the WebView is started while the permission dialog is open: tasks without permissions are served right away,
+     * the others wait for the answer of the user, e.g. allcapabilities only lists the capabilities with granted permissions
+     * */
+    public synchronized void setPermissionsPending() {
+        permissionsPending = true;
+    }
+
+    private synchronized boolean awaitPermissions(NativeRequest req) {
+        if (!permissionsPending)
+            return false;
+        awaitingPermissions.add(req);
+        return true;
+    }
+
+    public void onPermissionsResult() {
+        List<NativeRequest> waiting;
+        synchronized (this) {
+            permissionsPending = false;
+            waiting = new ArrayList<>(awaitingPermissions);
+            awaitingPermissions.clear();
+        }
+        // in the order they arrived, routing does not run the handlers
+        for (NativeRequest req : waiting) {
+            route(IPCTaskRegistry.getTask(req.getTaskName()), req);
+        }
+    }
+
+    //try to serve requested Task
+    private void serve(NativeRequest req) {
+        //cancelled while waiting in a queue
+        if (req.isCancelled())
+            return;
+        IPCMetrics.TaskMetrics taskMetrics = metrics.get(req.getTaskName());
+        long startedAt = System.nanoTime();
+        taskMetrics.queueWait.record(startedAt - req.getReceivedAt());
+        try {
+            IPCTaskRegistry.dispatch(req);
         } catch (Exception e) {
             e.printStackTrace();
             new NativeResponse(req).sendError("Error while serving the Request:" + e.getMessage());
         }
+        taskMetrics.handler.record(System.nanoTime() - startedAt);
+    }
+
+    // unknown task names share one entry, so the metrics can not be flooded
+    private String getMetricsName(NativeRequest req) {
+        return IPCTaskRegistry.getTask(req.getTaskName()) != null ? req.getTaskName() : "unknown";
+    }
+
+    private void recordResponse(NativeResponse res, long serializationNanos) {
+        NativeRequest req = res.getRequest();
+        IPCMetrics.TaskMetrics taskMetrics = metrics.get(getMetricsName(req));
+        taskMetrics.responses.incrementAndGet();
+        taskMetrics.serialization.record(serializationNanos);
+        if (res.isError())
+            taskMetrics.errors.incrementAndGet();
+        if (req.markAnswered()) {
+            taskMetrics.inFlight.decrementAndGet();
+            taskMetrics.endToEnd.record(System.nanoTime() - req.getReceivedAt());
+        }
+    }
+
+    // requests that waited for an identical request get a copy of its first response
+    private void answerFollowers(NativeResponse res) {
+        for (NativeRequest follower : singleFlight.complete(res.getRequest())) {
+            sendIPC(res.copyFor(follower));
+        }
+    }
+
+    // a binary response can not be copied, the waiting requests are served on their own
+    private void redispatchFollowers(NativeResponse res) {
+        for (NativeRequest follower : singleFlight.complete(res.getRequest())) {
+            try {
+                executors.dispatch(() -> receiveIPC(follower));
+            } catch (RejectedExecutionException e) {
+                new NativeResponse(follower).sendError("The native part is overloaded, the IPC dispatch queue is full");
+            }
+        }
+    }
+
+    /*
+     * cancel a request in progress: its cancel listeners run, it is answered with an error (reason)
+     * and later responses of its task are dropped. requests waiting for the same result are served on their own
+     * */
+    public boolean cancel(String taskID, String reason) {
+        NativeRequest req = inFlight.get(taskID);
+        return req != null && cancel(req, reason);
+    }
+
+    public boolean cancel(NativeRequest req, String reason) {
+        if (!req.cancel(reason))
+            return false;
+        inFlight.remove(req);
+        NativeResponse res = new NativeResponse(req).setError(reason);
+        deliver(res);
+        redispatchFollowers(res);
+        return true;
+    }
+
+    // the universal part has been reloaded, nobody waits for the responses anymore
+    public void cancelAll(String reason) {
+        for (NativeRequest req : inFlight.getAll()) {
+            if (req.cancel(reason))
+                inFlight.remove(req);
+        }
+        synchronized (this) {
+            for (NativeRequest req : awaitingPermissions)
+                req.cancel(reason);
+            awaitingPermissions.clear();
+        }
+        singleFlight.clear();
+    }
+
+    // a request that is kept open is no longer answered, e.g. a served path has been replaced
+    public void release(NativeRequest req) {
+        inFlight.remove(req);
+    }
+
+    // the request is answered without a response to the universal part (e.g. respond, answered over HTTP)
+    public void answeredElsewhere(NativeRequest req) {
+        inFlight.remove(req);
+        if (req.markAnswered()) {
+            IPCMetrics.TaskMetrics taskMetrics = metrics.get(getMetricsName(req));
+            taskMetrics.inFlight.decrementAndGet();
+            taskMetrics.endToEnd.record(System.nanoTime() - req.getReceivedAt());
+        }
+    }
+
+    /*
+     * false for responses to a cancelled request, these are dropped.
+     * a flight that is still open for the request is closed, its followers are served on their own
+     * */
+    private boolean accept(NativeResponse res) {
+        NativeRequest req = res.getRequest();
+        if (req.isCancelled()) {
+            if (IPCLog.isEnabled(IPCLog.Level.INFO))
+                IPCLog.log(IPCLog.Level.INFO, IPCLog.SENT, req.getInternalID(), req.getTaskName(), "dropped, " + req.getCancelReason());
+            redispatchFollowers(res);
+            return false;
+        }
+        if (!req.isKeptOpen())
+            inFlight.remove(req);
+        return true;
     }
 
     public void sendIPC(NativeResponse res) {
-        logIPC(res);
-        String jsCode = "ipcReceive(" + res.getMessage() + ");";
-        instance.wvInstance.postToUniversal(jsCode);
-    }
-    private void logIPC(NativeResponse res){
-        if(res.isError())
-            Log.e("PRC", res.toConsoleString());
-        else
-            Log.i("PRC", res.toConsoleString());
+        if (!accept(res))
+            return;
+        deliver(res);
+        answerFollowers(res);
+    }
+
+    private void deliver(NativeResponse res) {
+        long serializationStart = System.nanoTime();
+        String message = res.getMessage();
+        recordResponse(res, System.nanoTime() - serializationStart);
+        logIPC(res, message);
+        instance.wvInstance.postResponse(message);
+    }
+
+    // the responses reach the universal part in the same ipcReceive frame, unless the batch limit is hit in between
+    public void sendIPC(List<NativeResponse> responses) {
+        for (NativeResponse res : responses) {
+            sendIPC(res);
+        }
+    }
+
+    public boolean supportsBinary() {
+        return instance.wvInstance.supportsBinary();
+    }
+
+    // the universal part receives [taskID, [null, meta]] with the bytes in meta[field]
+    public void sendBinaryIPC(NativeResponse res, JSONObject meta, String field, byte[] data) {
+        if (!accept(res))
+            return;
+        long serializationStart = System.nanoTime();
+        String header = new JSONArray().put(res.getTaskID()).put(meta).put(field).toString();
+        recordResponse(res, System.nanoTime() - serializationStart);
+        logIPC(res, header);
+        instance.wvInstance.postBinary(header, data, 0, data.length);
+        redispatchFollowers(res);
+    }
+
+    /*
+     * one chunk of a chunked response, meta is only present in the first chunk
+     * binary:  header [taskID, meta, field, seq, last] + raw bytes
+     * string:  [taskID, null, {seq, last, field, meta, data}] with Base64 encoded data
+     * */
+    public void sendChunkIPC(NativeResponse res, JSONObject meta, String field, int seq, boolean last, byte[] data, int length) throws JSONException {
+        if ((last || res.getRequest().isCancelled()) && !accept(res))
+            return;
+        if (seq == 0)
+            redispatchFollowers(res);
+        long serializationStart = System.nanoTime();
+        if (supportsBinary()) {
+            String header = new JSONArray().put(res.getTaskID()).put(meta).put(field).put(seq).put(last).toString();
+            byte[] copy = Arrays.copyOf(data, length);
+            if (last) {
+                recordResponse(res, System.nanoTime() - serializationStart);
+                logIPC(res, header);
+            }
+            instance.wvInstance.postBinary(header, copy, 0, length);
+        } else {
+            JSONObject chunk = new JSONObject();
+            chunk.put("seq", seq);
+            chunk.put("last", last);
+            chunk.put("field", field);
+            chunk.put("meta", meta);
+            chunk.put("data", Base64.encodeToString(data, 0, length, Base64.NO_WRAP));
+            String message = new JSONArray().put(res.getTaskID()).put(JSONObject.NULL).put(chunk).toString();
+            if (last) {
+                recordResponse(res, System.nanoTime() - serializationStart);
+                logIPC(res, message);
+            }
+            instance.wvInstance.postResponse(message);
+        }
+    }
+
+    private void logIPC(NativeResponse res, String message) {
+        IPCLog.Level level = res.isError() ? IPCLog.Level.ERROR : IPCLog.Level.INFO;
+        if (IPCLog.isEnabled(level))
+            IPCLog.log(level, IPCLog.SENT, res.getRequest().getInternalID(), res.getRequest().getTaskName(), message);
     }
 }
@@ -12,6 +12,7 @@ import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
+import org.proceedlabs.engine.android.IPC.StartupMetrics;
 import org.proceedlabs.engine.android.NativeAPI.Capabilities.CapabilityNFCScanner;
 import org.proceedlabs.engine.android.NativeAPI.Capabilities.CapabilityTakeUserPhoto;
 import org.proceedlabs.engine.android.NativeAPI.Discovery;
@@ -34,6 +35,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.mark(StartupMetrics.Milestone.onCreate);
         setContentView(R.layout.activity_main);
 
         //request Background Activity
@@ -43,11 +45,12 @@ public class MainActivity extends AppCompatActivity {
         ipcController = new IPCController(this);
         ipcController.addPermission(additionalPermissions);
 
-        //start WebView, AFTER Permissions granted/DENIED -> all capabilities can be shown
-        if (!ipcController.checkPermissions(this))
+        //start WebView while the user answers the permission dialog, tasks that need permissions wait for the result
+        if (!ipcController.checkPermissions(this)) {
+            ipcController.setPermissionsPending();
             ActivityCompat.requestPermissions(this, ipcController.requiredPermissions, PERMISSIONS_REQUEST_CODE);
-        else
-            startWebView();
+        }
+        startWebView();
 
         NotificationService.startService(this);
 
@@ -58,7 +61,8 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
-        startWebView();
+        StartupMetrics.mark(StartupMetrics.Milestone.permissionsResolved);
+        ipcController.onPermissionsResult();
     }
 
     //start WebView,
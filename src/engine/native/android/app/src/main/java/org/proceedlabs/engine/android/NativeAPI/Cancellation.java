@@ -0,0 +1,25 @@
+package org.proceedlabs.engine.android.NativeAPI;
+
+import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.processor.IPCHandler;
+
+import org.json.JSONException;
+
+/*
+ * the universal part no longer needs the result of a request: cancel(taskID)
+ * the cancelled request is answered with an error and its task frees threads and hardware (see NativeRequest.onCancel)
+ * */
+public class Cancellation extends IPCTask {
+
+    @Override
+    @IPCHandler("cancel")
+    public void handle(NativeRequest req) throws JSONException {
+        String taskID = req.getArgs().getString(0);
+        if (req.getContext().ipcController.cancel(taskID, "cancelled by the universal part"))
+            new NativeResponse(req).send();
+        else
+            new NativeResponse(req).sendError("no request with the taskID " + taskID + " is in progress");
+    }
+}
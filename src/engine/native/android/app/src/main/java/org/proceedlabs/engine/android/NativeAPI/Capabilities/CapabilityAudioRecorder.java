@@ -9,29 +9,30 @@ import org.proceedlabs.engine.android.FormatAPI.Interfaces.CapabilitieTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
 import org.proceedlabs.engine.android.Utility.FileIO;
+import org.proceedlabs.engine.android.processor.RequiresPermissions;
 
 import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
+@RequiresPermissions(Manifest.permission.RECORD_AUDIO)
 public class CapabilityAudioRecorder extends CapabilitieTask {
     private static MediaRecorder recorderInstance;
     private static File outputFile;
 
     public CapabilityAudioRecorder() {
         capabilitiekNames = new String[]{"startAudioRecord", "stopAudioRecord"};
-        requiredPermissions = new String[]{Manifest.permission.RECORD_AUDIO};
         //JSON_LD = "placeholder";
     }
 
-    public static void startAudioRecord(NativeRequest req) throws IOException {
+    public static void startAudioRecord(NativeRequest req) throws IOException, JSONException {
+        int duration = req.getArgs().optInt(1, -1) * 1000;
         boolean started = startRecorder(req);
         if (!started) {
             new NativeResponse(req).sendError("Fehler: audioaufnahme bereits gestartet!");
             return;
         }
-        int duration = req.getArgs().optInt(1, -1) * 1000;
 
         if (duration < 0) {
             new NativeResponse(req).send();
@@ -4,7 +4,9 @@ import org.proceedlabs.engine.android.FormatAPI.Interfaces.CapabilitieTask;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
 import org.proceedlabs.engine.android.NativeAPI.Capabilities.CapabilitySilentPhoto.CapabilitySilentPhotoController;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -35,7 +37,7 @@ public class CapabilityController extends IPCTask {
     };
 
     public CapabilityController() {
-        taskNames = new String[]{"performcapabilitie", "allcapabilities"};
+        workload = Workload.LONG_WAIT;
         selfHandlePermissions = true;   //only display Capabiliteis with granted Permissions
 
         // register all Capabilities, get needed Permissions
@@ -49,18 +51,12 @@ public class CapabilityController extends IPCTask {
     }
 
     @Override
-    public void handle(NativeRequest req) throws JSONException, IOException {
-        switch (req.getTaskName()) {
-            case "performcapabilitie":
-                performcapabilitie(req);
-                break;
-            case "allcapabilities":
-                allcapabilities(req);
-                break;
-        }
+    public Workload getWorkload(NativeRequest req) {
+        return req.getTaskName().equals("allcapabilities") ? Workload.CPU : workload;
     }
 
-    private void allcapabilities(NativeRequest req) {
+    @IPCHandler("allcapabilities")
+    public void allcapabilities(NativeRequest req) {
         JSONArray resposne = new JSONArray();
         for (CapabilitieTask task : implementedCapabilities) {
             if (!task.checkPermissions(req.getContext()))     // hide Capabilities, with missing permissions
@@ -75,7 +71,8 @@ public class CapabilityController extends IPCTask {
         new NativeResponse(req).send(resposne);
     }
 
-    private void performcapabilitie(NativeRequest req) throws IOException, JSONException {
+    @IPCHandler("performcapabilitie")
+    public void performcapabilitie(NativeRequest req) throws IOException, JSONException {
         String capabilitieName = req.getArgs().getString(0);
         CapabilitieTask capabilitieTask = registeredCapabilitieTasks.get(capabilitieName);
 
@@ -58,21 +58,38 @@ public class CapabilityNFCScanner extends CapabilitieTask {
                 tryStart(req);
                 break;
             case "stopNFCscanner":
-                pendinfRequest = null;
+                stop(req);
                 break;
             case "scannForNFCtag":
                 req.getArgs().getString(1);    //validity check
                 pendinfRequest = req;
+                req.onCancel(() -> clearPending(req));
                 break;
         }
     }
 
+    private static synchronized void clearPending(NativeRequest req) {
+        if (pendinfRequest == req)
+            pendinfRequest = null;
+    }
+
+    private static synchronized void stop(NativeRequest req) {
+        if (pendinfRequest != null)
+            req.getContext().ipcController.release(pendinfRequest);
+        pendinfRequest = null;
+    }
+
     private synchronized void tryStart(NativeRequest req) throws JSONException {
-        if (pendinfRequest == null)
+        if (pendinfRequest == null) {
+            // every scanned tag is sent as a response to this request
+            req.keepOpen();
             pendinfRequest = req;
-        else if (pendinfRequest.getArgs().getString(0).equalsIgnoreCase("scannForNFCtag")) {
+            req.onCancel(() -> clearPending(req));
+        } else if (pendinfRequest.getArgs().getString(0).equalsIgnoreCase("scannForNFCtag")) {
             new NativeResponse(pendinfRequest).sendError("now scanning for all Tags");
+            req.keepOpen();
             pendinfRequest = req;
+            req.onCancel(() -> clearPending(req));
         } else
             new NativeResponse(req).sendError("already scanning for a Tag");
 
@@ -9,28 +9,29 @@ import org.proceedlabs.engine.android.FormatAPI.Interfaces.CapabilitieTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
 import org.proceedlabs.engine.android.Utility.FileIO;
+import org.proceedlabs.engine.android.processor.RequiresPermissions;
 
 import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
+@RequiresPermissions(Manifest.permission.CAMERA)
 public class CapabilitySilentPhotoController extends CapabilitieTask {
     private static NativeRequest pendingRequest;
 
     public CapabilitySilentPhotoController() {
         capabilitiekNames = new String[]{"takeSilentPhoto"};
-        requiredPermissions = new String[]{Manifest.permission.CAMERA};
     }
 
-    public static synchronized void takePhoto(NativeRequest req) {
+    public static synchronized void takePhoto(NativeRequest req) throws JSONException {
         if (pendingRequest != null) {
             new NativeResponse(req).sendError("already taking Picture!");
             return;
         }
-        pendingRequest = req;
         //choose lense
         boolean frontlende = req.getArgs().optBoolean(1, false);
+        pendingRequest = req;
         CapabilitySilentPhotoService.CAMERACHOICE = frontlende ? CameraCharacteristics.LENS_FACING_FRONT : CameraCharacteristics.LENS_FACING_BACK;
         try {
             Intent serviceIntent = new Intent(req.getContext(), CapabilitySilentPhotoService.class);
@@ -45,10 +46,14 @@ public class CapabilitySilentPhotoController extends CapabilitieTask {
         if (pendingRequest == null)
             return;
         Log.i("silentCamera", "took Photo");
-        int sizeKB = pendingRequest.getArgs().optInt(1, -1);    //todo an API anpassen
+        try {
+            int sizeKB = pendingRequest.getArgs().optInt(1, -1);    //todo an API anpassen
 
-        //send to Univ
-        new NativeResponse(pendingRequest).sendImageFile(file, sizeKB, pendingRequest.getContext());
+            //send to Univ
+            new NativeResponse(pendingRequest).sendImageFile(file, sizeKB, pendingRequest.getContext());
+        } catch (JSONException e) {
+            new NativeResponse(pendingRequest).sendError("Error while serving the Request:" + e.getMessage());
+        }
 
         //terminate Service!
         pendingRequest = null;
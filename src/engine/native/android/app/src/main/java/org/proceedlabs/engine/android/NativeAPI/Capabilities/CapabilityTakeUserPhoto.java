@@ -11,12 +11,16 @@ import org.proceedlabs.engine.android.FormatAPI.Interfaces.CapabilitieTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
 import org.proceedlabs.engine.android.Utility.FileIO;
+import org.proceedlabs.engine.android.processor.RequiresPermissions;
+
+import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
 import static android.app.Activity.RESULT_OK;
 
+@RequiresPermissions(Manifest.permission.CAMERA)
 public class CapabilityTakeUserPhoto extends CapabilitieTask {
 
     public static int PICTURE_REQUEST_CODE = 1;
@@ -24,16 +28,18 @@ public class CapabilityTakeUserPhoto extends CapabilitieTask {
     private static NativeRequest pendingRequest;
     public CapabilityTakeUserPhoto() {
         capabilitiekNames = new String[]{"takeUserPhoto"};
-        requiredPermissions = new String[]{Manifest.permission.CAMERA};
     }
 
     public static void onTakePictureCallback(int resultCode, Intent data) {
         if (resultCode == RESULT_OK) {
             File file = new File(fileName);
-            int sizeKB = pendingRequest.getArgs().optInt(1, -1);    //todo an API anpassen
-
-            new NativeResponse(pendingRequest).sendImageFile(file, sizeKB, pendingRequest.getContext());
+            try {
+                int sizeKB = pendingRequest.getArgs().optInt(1, -1);    //todo an API anpassen
 
+                new NativeResponse(pendingRequest).sendImageFile(file, sizeKB, pendingRequest.getContext());
+            } catch (JSONException e) {
+                new NativeResponse(pendingRequest).sendError("Error while serving the Request:" + e.getMessage());
+            }
         } else {
             new NativeResponse(pendingRequest).sendError("Fehler bei der Aufnahme");
         }
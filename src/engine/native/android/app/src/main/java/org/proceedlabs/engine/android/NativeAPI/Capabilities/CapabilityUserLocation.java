@@ -11,16 +11,17 @@ import android.os.Looper;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.CapabilitieTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.processor.RequiresPermissions;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 
+@RequiresPermissions(Manifest.permission.ACCESS_FINE_LOCATION)
 public class CapabilityUserLocation extends CapabilitieTask {
 
     public CapabilityUserLocation() {
-        requiredPermissions = new String[]{Manifest.permission.ACCESS_FINE_LOCATION,};
         capabilitiekNames = new String[]{"getUserLocation"};
         //add JSON_LD here
     }
@@ -60,6 +61,8 @@ public class CapabilityUserLocation extends CapabilitieTask {
             }
         };
         locationManager.requestSingleUpdate("gps", loc, Looper.getMainLooper());
+        //stop waiting for the GPS when the universal part no longer needs the location
+        req.onCancel(() -> locationManager.removeUpdates(loc));
     }
 
     @Override
@@ -7,47 +7,41 @@ import android.util.Log;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
 import org.proceedlabs.engine.android.Utility.AssesIO;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.util.Iterator;
 
 public class Configuration extends IPCTask {
     public static final String tag = Configuration.class.getSimpleName();
 
     public Configuration() {
-        taskNames = new String[]{"read_config", "write_config"};
+        workload = Workload.IO;
     }
 
-    @Override
-    public void handle(NativeRequest req) throws JSONException, IOException {
-        switch (req.getTaskName()) {
-            case "read_config":
-                readConfig(req);
-                break;
-            case "write_config":
-                writeConfig(req);
-                break;
-
-        }
+    @IPCHandler("read_config")
+    public void readConfig(NativeRequest req) throws JSONException {
+        new NativeResponse(req).send(getConfig(req.getContext()));
     }
 
-    public void readConfig(NativeRequest req) throws JSONException {
-        JSONObject confDefault = getDefaultConfig(req);
-        JSONObject confUser = getUserConfig(req);
+    // the default configuration merged with the one of the user, also read by the native part (e.g. the "http" section)
+    public static JSONObject getConfig(Context context) throws JSONException {
+        JSONObject confDefault = getDefaultConfig(context);
+        JSONObject confUser = getUserConfig(context);
 
         Log.d(tag, "User configuration: " + confUser.toString());
 
         mergeConfig(confDefault, confUser);
-
-        new NativeResponse(req).send(confDefault);
+        return confDefault;
     }
 
+    @IPCHandler("write_config")
     public void writeConfig(NativeRequest req) throws JSONException {
-        JSONObject userConfig = getUserConfig(req);
+        JSONObject userConfig = getUserConfig(req.getContext());
         JSONObject newConfVals = req.getArgs().optJSONObject(0);
         if (newConfVals == null) {
             new NativeResponse(req).sendError("Missing Parameter: new Config ");
@@ -65,8 +59,8 @@ public class Configuration extends IPCTask {
         readConfig(req);        //Todo: write about
     }
 
-    private JSONObject getUserConfig(NativeRequest req) {
-        SharedPreferences pref = req.getContext().getSharedPreferences("ConfigTable", Context.MODE_PRIVATE);
+    private static JSONObject getUserConfig(Context context) {
+        SharedPreferences pref = context.getSharedPreferences("ConfigTable", Context.MODE_PRIVATE);
         if (!pref.contains("userConfig")){
             return new JSONObject();
         }
@@ -79,8 +73,8 @@ public class Configuration extends IPCTask {
         }
     }
 
-    private JSONObject getDefaultConfig(NativeRequest req) throws JSONException {
-        JSONObject defaultConfig = new JSONObject(AssesIO.readAsset("config_default.json", req.getContext()));
+    private static JSONObject getDefaultConfig(Context context) throws JSONException {
+        JSONObject defaultConfig = new JSONObject(AssesIO.readAsset("config_default.json", context));
 
         // hard-code that the Android App accepts user tasks by default
         try {
@@ -97,7 +91,7 @@ public class Configuration extends IPCTask {
         pref.edit().putString("userConfig", userConfig.toString()).apply();
     }
 
-    private void mergeConfig(JSONObject defaultConfig, JSONObject newVals) throws JSONException {
+    static void mergeConfig(JSONObject defaultConfig, JSONObject newVals) throws JSONException {
         for (Iterator<String> it = newVals.keys(); it.hasNext(); ) {
             String key = it.next();
 
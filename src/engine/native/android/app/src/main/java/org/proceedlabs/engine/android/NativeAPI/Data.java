@@ -7,6 +7,8 @@ import android.util.Log;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -15,27 +17,30 @@ import org.json.JSONObject;
 import java.util.Map;
 
 //checked
+/*
+ * reads and writes of a table are served one after another on the same lane (like the table queues of the node native-fs module),
+ * different tables are served in parallel
+ * */
 public class Data extends IPCTask {
     final static String tableName = " table";
 
     public Data() {
-        taskNames = new String[]{"read", "write"};
+        workload = Workload.IO;
     }
 
 
     @Override
-    public void handle(NativeRequest req) throws JSONException {
-        switch (req.getTaskName()) {
-            case "read":
-                readCommand(req);
-                break;
-            case "write":
-                writeCommand(req);
-                break;
-        }
+    public boolean isIdempotent(NativeRequest req) {
+        return req.getTaskName().equals("read");
+    }
+
+    @Override
+    public String getLaneKey(NativeRequest req) throws JSONException {
+        return "data/" + req.getArgs().getString(0).split("/")[0];
     }
 
 
+    @IPCHandler("read")
     public static void readCommand(NativeRequest req) throws JSONException {
         JSONArray args = req.getArgs();
         String tableKey = args.getString(0);
@@ -76,7 +81,8 @@ public class Data extends IPCTask {
         }
     }
 
-    public synchronized static void writeCommand(NativeRequest req) throws JSONException {
+    @IPCHandler("write")
+    public static void writeCommand(NativeRequest req) throws JSONException {
         JSONArray args = req.getArgs();
         String tableKey = args.getString(0);
         String key;
@@ -4,6 +4,8 @@ import org.proceedlabs.engine.android.FormatAPI.Interfaces.DeviceInfoTask;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -45,7 +47,7 @@ public class DeviceInfoController extends IPCTask {
     };
 
     public DeviceInfoController() {
-        taskNames = new String[]{"read_device_info"};
+        workload = Workload.IO;
         selfHandlePermissions = true;   // self handle Permissions, in case they aren't granted
 
         //register subTaskts and collect Permissions
@@ -55,6 +57,12 @@ public class DeviceInfoController extends IPCTask {
         }
     }
 
+    @Override
+    public boolean isIdempotent(NativeRequest req) {
+        return true;
+    }
+
+    @IPCHandler("read_device_info")
     public void handle(NativeRequest req) throws JSONException {
         JSONObject responseJSON = new JSONObject();
 
@@ -0,0 +1,74 @@
+package org.proceedlabs.engine.android.NativeAPI;
+
+import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.ChunkedTransfer;
+import org.proceedlabs.engine.android.IPC.IPCLog;
+import org.proceedlabs.engine.android.IPC.StartupMetrics;
+import org.proceedlabs.engine.android.IPCController;
+import org.proceedlabs.engine.android.NativeAPI.Server.Server;
+import org.proceedlabs.engine.android.WebViewController;
+import org.proceedlabs.engine.android.processor.IPCHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * insight into the IPC of the native part
+ *
+ * ipc_metrics([reset])          snapshot of the IPC metrics, reset = true clears the per-task metrics afterwards
+ *                               includes the cold start milestones (startup), see StartupMetrics
+ * ipc_log(["dump"])             entries of the IPC log ring buffer, oldest first
+ * ipc_log(["clear"])            empties the ring buffer
+ * ipc_log(["level", l, logcat]) sets the log level (OFF, ERROR, INFO), logcat = true mirrors all entries to logcat
+ * */
+public class Diagnostics extends IPCTask {
+
+    @IPCHandler("ipc_metrics")
+    public void ipcMetrics(NativeRequest req) throws JSONException {
+        IPCController ipcController = req.getContext().ipcController;
+        WebViewController webView = req.getContext().wvInstance;
+
+        JSONObject bridge = new JSONObject();
+        bridge.put("crossings", webView.getBridgeCrossings());
+        bridge.put("messages", webView.getBridgedMessages());
+
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("tasks", ipcController.metrics.getSnapshot());
+        snapshot.put("executors", ipcController.executors.getStats());
+        snapshot.put("responses", webView.getResponseScheduler().getStats());
+        snapshot.put("bridge", bridge);
+        snapshot.put("chunkedTransfers", ChunkedTransfer.getStats());
+        snapshot.put("startup", StartupMetrics.getSnapshot());
+        snapshot.put("server", Server.getStats());
+
+        if (req.getArgs().optBoolean(0, false))
+            ipcController.metrics.reset();
+
+        new NativeResponse(req).send(snapshot);
+    }
+
+    @IPCHandler("ipc_log")
+    public void ipcLog(NativeRequest req) throws JSONException {
+        switch (req.getArgs().optString(0, "dump")) {
+            case "dump":
+                new NativeResponse(req).send(IPCLog.dump());
+                break;
+            case "clear":
+                IPCLog.clear();
+                new NativeResponse(req).send();
+                break;
+            case "level":
+                try {
+                    IPCLog.setLevel(IPCLog.Level.valueOf(req.getArgs().getString(1).toUpperCase()), req.getArgs().optBoolean(2, false));
+                    new NativeResponse(req).send(IPCLog.getLevel().name());
+                } catch (IllegalArgumentException e) {
+                    new NativeResponse(req).sendError("Unknown log level, use one of OFF, ERROR, INFO");
+                }
+                break;
+            default:
+                new NativeResponse(req).sendError("Unknown ipc_log command, use dump, clear or level");
+        }
+    }
+}
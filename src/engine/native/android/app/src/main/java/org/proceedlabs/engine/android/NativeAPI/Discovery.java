@@ -8,13 +8,14 @@ import android.util.Log;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
 import org.proceedlabs.engine.android.Utility.DiscoveryRegistrationListener;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -55,7 +56,7 @@ public class Discovery extends IPCTask {
     private static LinkedList<NsdServiceInfo> resolveableDevices;
 
     public Discovery() {
-        taskNames = new String[]{"publish", "discover", "unpublish"};
+        workload = Workload.IO;
     }
 
     private static synchronized void tryInit(NativeRequest req) {
@@ -71,6 +72,7 @@ public class Discovery extends IPCTask {
      * publish the mashine within the network
      *
      * */
+    @IPCHandler("publish")
     public synchronized static void publish(NativeRequest req) throws JSONException {
         tryInit(req);
         String name = req.getArgs().getString(0);
@@ -99,6 +101,7 @@ public class Discovery extends IPCTask {
         nsdManager.registerService(serviceInfo, NsdManager.PROTOCOL_DNS_SD, getRegistrationListener(req));
     }
 
+    @IPCHandler("discover")
     public static void discover(NativeRequest req) {
         tryInit(req);
         JSONArray resp = new JSONArray();
@@ -108,6 +111,7 @@ public class Discovery extends IPCTask {
         new NativeResponse(req).send(resp);
     }
 
+    @IPCHandler("unpublish")
     public synchronized static void unpublish(NativeRequest req) {
         if (publishedServices == null) {
             if (req != null)
@@ -273,18 +277,4 @@ public class Discovery extends IPCTask {
         }
     }
 
-    @Override
-    public void handle(NativeRequest req) throws JSONException, IOException {
-        switch (req.getTaskName()) {
-            case "publish":
-                publish(req);
-                break;
-            case "discover":
-                discover(req);
-                break;
-            case "unpublish":
-                unpublish(req);
-                break;
-        }
-    }
 }
@@ -0,0 +1,85 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import android.util.Base64;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/*
+ * the answer of the universal part to a client request, the "respond" request:
+ * [response, sessionID, statusCode, mimeType, options?]
+ *
+ * read from the raw args, the args are never decoded into a JSON tree: a response that is not a string
+ * (e.g. an object) is sent to the client as the JSON text it arrived in, instead of being parsed and serialized again
+ *
+ * options, for binary bodies:
+ * {encoding: "base64"}  the response is Base64, the client receives the decoded bytes
+ * {file: reference}     the client receives a native file, an upload handle or a path in the files/cache directory of the app
+ * {stream: true}        the body follows in chunks, see ResponseStream
+ * */
+class Answer {
+    final NativeRequest request;
+    final String sessionID;
+    final String body;          // null if the response is missing
+    final int statusCode;       // -1 if it is not a number
+    final String mimeType;      // null if it is missing
+    final byte[] bytes;         // decoded {encoding: "base64"} response
+    final String file;
+    final boolean stream;
+
+    private Answer(NativeRequest request, String sessionID, String body, int statusCode, String mimeType, JSONObject options) throws JSONException {
+        this.request = request;
+        this.sessionID = sessionID;
+        this.body = body;
+        this.statusCode = statusCode;
+        this.mimeType = mimeType;
+        this.file = options.optString("file", null);
+        this.stream = options.optBoolean("stream", false);
+        this.bytes = options.optString("encoding").equals("base64") && body != null ? decodeBase64(body) : null;
+    }
+
+    static Answer of(NativeRequest respondRequest) throws JSONException {
+        String[] args = respondRequest.getRawArgs();
+        String sessionID = args.length > 1 ? getText(args[1]) : null;
+        if (sessionID == null)
+            throw new JSONException("respond expects [response, sessionID, statusCode, mimeType, options?]");
+        JSONObject options = args.length > 4 && args[4].startsWith("{") ? new JSONObject(args[4]) : new JSONObject();
+        return new Answer(respondRequest, sessionID,
+                getText(args[0]),
+                args.length > 2 ? getStatusCode(args[2]) : -1,
+                args.length > 3 ? getText(args[3]) : null,
+                options);
+    }
+
+    // the body is the response text, no bytes, file or stream
+    boolean isText() {
+        return bytes == null && file == null && !stream;
+    }
+
+    // strings are unquoted, other values are kept as JSON text, null for null
+    static String getText(String rawArg) throws JSONException {
+        if (rawArg.startsWith("\""))
+            return (String) new JSONTokener(rawArg).nextValue();
+        return rawArg.equals("null") ? null : rawArg;
+    }
+
+    private static int getStatusCode(String rawArg) throws JSONException {
+        String text = getText(rawArg);
+        try {
+            return text == null ? -1 : (int) Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static byte[] decodeBase64(String base64) throws JSONException {
+        try {
+            return Base64.decode(base64, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException("invalid Base64: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.IPC.IPCExecutors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/*
+ * runs the client connections of the Server on a bounded pool, instead of NanoHTTPD's new thread per connection
+ *
+ * maxThreads connections are served at the same time, acceptBacklog more wait for a free thread.
+ * a connection that does not fit is answered with 503 + Retry-After and closed right away,
+ * so a burst of clients is shed quickly instead of piling up threads that each wait for the universal part
+ * */
+class BoundedRunner implements NanoHTTPD.AsyncRunner {
+    private final ThreadPoolExecutor pool;
+    private final int retryAfter;
+    private final Set<NanoHTTPD.ClientHandler> running = new HashSet<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    BoundedRunner(ServerOptions options) {
+        retryAfter = options.retryAfter;
+        BlockingQueue<Runnable> waiting = options.acceptBacklog > 0 ? new ArrayBlockingQueue<>(options.acceptBacklog) : new SynchronousQueue<>();
+        pool = new ThreadPoolExecutor(options.maxThreads, options.maxThreads, 30, TimeUnit.SECONDS, waiting, new IPCExecutors.NamedThreadFactory("http"));
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void exec(NanoHTTPD.ClientHandler handler) {
+        synchronized (running) {
+            running.add(handler);
+        }
+        try {
+            pool.execute(handler);
+            accepted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            synchronized (running) {
+                running.remove(handler);
+            }
+            shed.incrementAndGet();
+            if (handler instanceof Server.Connection)
+                reject(((Server.Connection) handler).socket);
+            handler.close();
+        }
+    }
+
+    // written on the accepting thread, the few bytes fit into the send buffer of the socket
+    private void reject(Socket socket) {
+        String response = "HTTP/1.1 503 Service Unavailable\r\n"
+                + "Retry-After: " + retryAfter + "\r\n"
+                + "Content-Length: 0\r\n"
+                + "Connection: close\r\n\r\n";
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(response.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException e) {
+            // the client is gone already
+        }
+    }
+
+    @Override
+    public void closed(NanoHTTPD.ClientHandler handler) {
+        synchronized (running) {
+            running.remove(handler);
+        }
+    }
+
+    @Override
+    public void closeAll() {
+        List<NanoHTTPD.ClientHandler> handlers;
+        synchronized (running) {
+            handlers = new ArrayList<>(running);
+        }
+        for (NanoHTTPD.ClientHandler handler : handlers) {
+            handler.close();
+        }
+        pool.shutdownNow();
+    }
+
+    // all threads serve a connection and others are waiting, idle keep-alive connections should make room
+    boolean isBusy() {
+        return pool.getActiveCount() >= pool.getMaximumPoolSize() && !pool.getQueue().isEmpty();
+    }
+
+    JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("active", pool.getActiveCount());
+        stats.put("maxThreads", pool.getMaximumPoolSize());
+        stats.put("queued", pool.getQueue().size());
+        stats.put("accepted", accepted.get());
+        stats.put("shed", shed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,22 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/*
+ * backend of the ServerController, selected by the "backend" option of the "http" configuration
+ *
+ * nanohttpd  Server, one thread of a bounded pool per connection
+ * nio        NioServer, one selector thread for all connections
+ *
+ * both share the routes, the sessions and the messages to the universal part, which are kept in Server
+ * */
+interface HttpServer {
+    void start() throws IOException;
+
+    void stop();
+
+    JSONObject getBackendStats() throws JSONException;
+}
@@ -0,0 +1,865 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import android.util.Log;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fi.iki.elonen.NanoHTTPD.Method;
+import fi.iki.elonen.NanoHTTPD.ResponseException;
+import fi.iki.elonen.NanoHTTPD.Response.IStatus;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+
+/*
+ * non-blocking HTTP/1.1 backend, selected with "http": {"backend": "nio"}
+ *
+ * one selector thread accepts, reads and writes all client connections. a request waiting for the universal part
+ * is parked as an Exchange, its Session wakes the selector once "respond" has arrived, so hundreds of slow requests
+ * of other engines cost memory but no threads. routes, sessions and the messages to the universal part are those of Server
+ *
+ * supported: request bodies with Content-Length, keep-alive, pipelining (one request of a connection at a time).
+ * a body larger than inlineBodySize is written to a file (see Uploads) as it arrives, up to maxUploadSize
+ * not supported: chunked request bodies (411), parsing multipart bodies (a large one is passed as one file), TLS.
+ * the hostname of a client is its address, to avoid reverse lookups
+ * */
+public class NioServer implements HttpServer {
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+    private final int port;
+    private final ServerOptions options;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    // exchanges whose session has been answered or aborted, handed over to the selector thread
+    private final ConcurrentLinkedQueue<Exchange> answered = new ConcurrentLinkedQueue<>();
+    // connections whose response stream has a new chunk
+    private final ConcurrentLinkedQueue<Connection> streaming = new ConcurrentLinkedQueue<>();
+    // selector thread only
+    private final PriorityQueue<Exchange> deadlines = new PriorityQueue<>(16, (a, b) -> Long.signum(a.session.expiresAt - b.session.expiresAt));
+    private final Set<Connection> connections = new HashSet<>();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("E, d MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    private long lastIdleCheck;
+
+    private volatile int openConnections;
+    private volatile int parkedExchanges;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    NioServer(int port, ServerOptions options) {
+        this.port = port;
+        this.options = options;
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    // a connection and its buffers, selector thread only
+    private static class Connection {
+        final SocketChannel channel;
+        final String ip;
+        final String hostname;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out;
+        FileChannel file;           // sent after out, with transferTo
+        long filePosition;
+        long fileRemaining;
+        ResponseStream stream;      // chunks sent after out, as they arrive
+        long streamTimeout;
+        boolean closeAfterWrite;
+        Upload upload;              // the body of the next request, while it is written to a file
+        Exchange parked;
+        long lastActivity = System.nanoTime();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            InetAddress address = channel.socket().getInetAddress();
+            ip = address.getHostAddress();
+            hostname = address.isLoopbackAddress() || address.isAnyLocalAddress() ? "localhost" : ip;
+        }
+    }
+
+    // a client request waiting for the universal part
+    private static class Exchange {
+        final Connection conn;
+        final Session session;
+        final boolean keepAlive;
+        final Server.ClientRequest clientRequest;
+        final Uploads uploads;      // null if the body was passed inline
+        boolean finished;
+
+        Exchange(Connection conn, Session session, boolean keepAlive, Server.ClientRequest clientRequest, Uploads uploads) {
+            this.conn = conn;
+            this.session = session;
+            this.keepAlive = keepAlive;
+            this.clientRequest = clientRequest;
+            this.uploads = uploads;
+        }
+
+        // the handles of the uploads are valid until the client request has been answered
+        void releaseUploads() {
+            if (uploads != null)
+                uploads.release();
+        }
+    }
+
+    // body is null if it has been spooled to a file of uploads
+    private static class Request {
+        final String method;
+        final String target;
+        final String version;
+        final Map<String, String> headers;
+        final byte[] body;
+        final Uploads uploads;
+
+        Request(String method, String target, String version, Map<String, String> headers, byte[] body, Uploads uploads) {
+            this.method = method;
+            this.target = target;
+            this.version = version;
+            this.headers = headers;
+            this.body = body;
+            this.uploads = uploads;
+        }
+    }
+
+    // a request body on its way to a file
+    private static class Upload {
+        final Request request;
+        final File file;
+        final FileChannel channel;
+        long remaining;
+
+        Upload(Request request, File file, long length) throws IOException {
+            this.request = request;
+            this.file = file;
+            this.channel = new FileOutputStream(file).getChannel();
+            this.remaining = length;
+        }
+    }
+
+    // a request that is answered with an error status, the connection is closed afterwards
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        final IStatus status;
+
+        HttpError(IStatus status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port), Math.max(1, options.acceptBacklog));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "http-nio");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public JSONObject getBackendStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("backend", "nio");
+        stats.put("connections", openConnections);
+        stats.put("maxConnections", options.maxConnections);
+        stats.put("parked", parkedExchanges);
+        stats.put("accepted", accepted.get());
+        stats.put("shed", shed.get());
+        return stats;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(getSelectTimeout());
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if (key.isReadable())
+                            read(conn);
+                        if (key.isValid() && key.isWritable() && write(conn))
+                            process(conn);
+                    } catch (IOException | CancelledKeyException e) {
+                        if (conn != null)
+                            close(conn);
+                    }
+                }
+                finishAnswered();
+                resumeStreams();
+                expire();
+                closeIdle();
+                openConnections = connections.size();
+                parkedExchanges = deadlines.size();
+            }
+        } catch (IOException e) {
+            Log.e("NioServer", "the selector failed", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    // wake up for the next deadline, at least once a second for the idle connections
+    private long getSelectTimeout() {
+        Exchange next = deadlines.peek();
+        if (next == null)
+            return 1000;
+        long millis = TimeUnit.NANOSECONDS.toMillis(next.session.expiresAt - System.nanoTime());
+        return Math.max(1, Math.min(1000, millis + 1));
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connections.size() >= options.maxConnections) {
+                shed.incrementAndGet();
+                reject(channel);
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection conn = new Connection(channel);
+            conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+            connections.add(conn);
+            accepted.incrementAndGet();
+        }
+    }
+
+    // the accepted channel is still blocking, the few bytes fit into its send buffer
+    private void reject(SocketChannel channel) {
+        String response = "HTTP/1.1 503 Service Unavailable\r\n"
+                + "Retry-After: " + options.retryAfter + "\r\n"
+                + "Content-Length: 0\r\n"
+                + "Connection: close\r\n\r\n";
+        try {
+            channel.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            // the client is gone already
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private void read(Connection conn) throws IOException {
+        if (conn.parked != null || isWriting(conn))
+            return;
+        if (conn.channel.read(conn.in) < 0) {
+            close(conn);
+            return;
+        }
+        conn.lastActivity = System.nanoTime();
+        process(conn);
+    }
+
+    // handle the buffered requests of a connection, until one of them is parked or its response is still being written
+    private void process(Connection conn) {
+        while (conn.parked == null && !isWriting(conn) && conn.channel.isOpen()) {
+            Request request;
+            try {
+                request = parse(conn);
+            } catch (HttpError e) {
+                send(conn, e.status, "text/plain", e.getMessage(), false, "");
+                return;
+            } catch (IOException e) {
+                //the body could not be written to its file
+                send(conn, Status.INTERNAL_ERROR, "text/plain", "", false, "");
+                return;
+            }
+            if (request == null)
+                return;
+            handle(conn, request);
+        }
+    }
+
+    // the first complete request of the input buffer, null if more bytes are needed
+    private Request parse(Connection conn) throws HttpError, IOException {
+        if (conn.upload != null)
+            return spool(conn);
+        ByteBuffer in = conn.in;
+        int headerEnd = indexOfHeaderEnd(in.array(), in.position());
+        if (headerEnd < 0) {
+            if (in.position() >= MAX_HEADER_SIZE)
+                throw new HttpError(Status.BAD_REQUEST, "request header too large");
+            if (!in.hasRemaining())
+                grow(conn, in.capacity() * 2);
+            return null;
+        }
+
+        String[] lines = new String(in.array(), 0, headerEnd, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3)
+            throw new HttpError(Status.BAD_REQUEST, "malformed request line");
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0)
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.US), lines[i].substring(colon + 1).trim());
+        }
+        if (headers.containsKey("transfer-encoding"))
+            throw new HttpError(Status.LENGTH_REQUIRED, "chunked request bodies are not supported");
+
+        long contentLength;
+        try {
+            contentLength = headers.containsKey("content-length") ? Long.parseLong(headers.get("content-length")) : 0;
+        } catch (NumberFormatException e) {
+            throw new HttpError(Status.BAD_REQUEST, "invalid Content-Length");
+        }
+        if (contentLength < 0)
+            throw new HttpError(Status.BAD_REQUEST, "invalid Content-Length");
+        if (contentLength > options.maxUploadSize)
+            throw new HttpError(Status.PAYLOAD_TOO_LARGE, "the request body exceeds " + options.maxUploadSize + " bytes");
+        if (contentLength > options.inlineBodySize) {
+            Request request = new Request(requestLine[0], requestLine[1], requestLine[2], headers, null, new Uploads());
+            startUpload(conn, request, headerEnd + 4, contentLength);
+            return spool(conn);
+        }
+
+        // the buffer grows with the bytes that have arrived, a Content-Length alone does not allocate inlineBodySize
+        int total = headerEnd + 4 + (int) contentLength;
+        if (in.position() < total) {
+            if (!in.hasRemaining())
+                grow(conn, (int) Math.min(total, in.capacity() * 2L));
+            return null;
+        }
+        byte[] body = Arrays.copyOfRange(in.array(), headerEnd + 4, total);
+        consume(conn, total);
+        return new Request(requestLine[0], requestLine[1], requestLine[2], headers, body, null);
+    }
+
+    // only a body that is passed to the universal part is spooled: POST or PUT to a served route
+    private void startUpload(Connection conn, Request request, int bodyStart, long length) throws HttpError, IOException {
+        Method method;
+        try {
+            method = Method.valueOf(request.method);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(Status.NOT_IMPLEMENTED, "");
+        }
+        if (method != Method.POST && method != Method.PUT)
+            throw new HttpError(Status.PAYLOAD_TOO_LARGE, "the request body exceeds " + options.inlineBodySize + " bytes");
+        int queryStart = request.target.indexOf('?');
+        Router.Match route = Server.router.match(Server.decodeURI(queryStart < 0 ? request.target : request.target.substring(0, queryStart)));
+        if (route == null)
+            throw new HttpError(Status.NOT_FOUND, "");
+        if (route.methods.get(method) == null)
+            throw new HttpError(Status.METHOD_NOT_ALLOWED, "");
+
+        File file = request.uploads.newFile();
+        try {
+            conn.upload = new Upload(request, file, length);
+        } catch (IOException e) {
+            request.uploads.release();
+            throw e;
+        }
+        consume(conn, bodyStart);
+        if (conn.in.capacity() < UPLOAD_BUFFER_SIZE)
+            grow(conn, UPLOAD_BUFFER_SIZE);
+    }
+
+    // writes the bytes of the body that have arrived to its file, the request once the body is complete
+    private Request spool(Connection conn) throws IOException {
+        Upload upload = conn.upload;
+        ByteBuffer in = conn.in;
+        int filled = in.position();
+        int body = (int) Math.min(filled, upload.remaining);
+        in.flip();
+        in.limit(body);
+        while (in.hasRemaining())
+            upload.remaining -= upload.channel.write(in);
+        in.limit(in.capacity());
+        in.position(filled);
+        if (upload.remaining > 0) {
+            consume(conn, body);
+            return null;
+        }
+
+        conn.upload = null;
+        consume(conn, body);
+        upload.channel.close();
+        try {
+            upload.request.uploads.add("body", null, upload.request.headers.get("content-type"), upload.file);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        return upload.request;
+    }
+
+    // drops the first bytes of the input buffer and keeps those of pipelined requests,
+    // large buffers are not kept for idle connections
+    private static void consume(Connection conn, int bytes) {
+        ByteBuffer in = conn.in;
+        in.flip();
+        in.position(bytes);
+        if (conn.upload == null && in.capacity() > BUFFER_SIZE && in.remaining() <= BUFFER_SIZE) {
+            ByteBuffer small = ByteBuffer.allocate(BUFFER_SIZE);
+            small.put(in);
+            conn.in = small;
+        } else {
+            in.compact();
+        }
+    }
+
+    private static int indexOfHeaderEnd(byte[] data, int length) {
+        for (int i = 0; i + 3 < length; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    private static void grow(Connection conn, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        conn.in.flip();
+        larger.put(conn.in);
+        conn.in = larger;
+    }
+
+    private static boolean isKeepAlive(Request request) {
+        String connection = request.headers.get("connection");
+        if (request.version.equals("HTTP/1.0"))
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        return connection == null || !connection.equalsIgnoreCase("close");
+    }
+
+    // the uploads of a request are released once it has been answered, a parked exchange releases them in finish()
+    private void handle(Connection conn, Request request) {
+        try {
+            route(conn, request);
+        } finally {
+            if (request.uploads != null && conn.parked == null)
+                request.uploads.release();
+        }
+    }
+
+    // same steps as Server.route, but the answer of the universal part is awaited by parking the exchange
+    private void route(Connection conn, Request request) {
+        boolean keepAlive = isKeepAlive(request);
+        Method method;
+        try {
+            method = Method.valueOf(request.method);
+        } catch (IllegalArgumentException e) {
+            send(conn, Status.NOT_IMPLEMENTED, "text/plain", "", keepAlive, "");
+            return;
+        }
+        int queryStart = request.target.indexOf('?');
+        String uri = Server.decodeURI(queryStart < 0 ? request.target : request.target.substring(0, queryStart));
+
+        if (method == Method.OPTIONS) {
+            if (Server.getSupportedMethodsByURL(uri) == null) {
+                send(conn, Status.NOT_FOUND, "text/plain", "", keepAlive, "");
+                return;
+            }
+            String headers = "Access-Control-Allow-Methods: " + Server.getSupportedMethods(uri) + "\r\n"
+                    + "Access-Control-Allow-Origin: *\r\n"
+                    + "Access-Control-Allow-Headers: *\r\n";
+            send(conn, Status.OK, "text/html", "", keepAlive, headers);
+            return;
+        }
+
+        Router.Match route = Server.router.match(uri);
+        if (route == null) {    //Path not served
+            sendStaticFile(conn, request.method, uri, request.headers, keepAlive);
+            return;
+        }
+        NativeRequest serveRequest = route.methods.get(method);
+        if (serveRequest == null) {     //method not served
+            send(conn, Status.METHOD_NOT_ALLOWED, "text/plain", "", keepAlive, "");
+            return;
+        }
+
+        Exchange exchange = null;
+        try {
+            Map<String, List<String>> parameters = queryStart < 0 ? new HashMap<>() : Server.decodeQuery(request.target.substring(queryStart + 1));
+            Server.ClientRequest clientRequest = new Server.ClientRequest(serveRequest, method, uri, parameters);
+            //answered before, without the universal part
+            ResponseCache.Entry cached = clientRequest.getCached();
+            if (cached != null) {
+                send(conn, Status.OK, cached.mimeType, cached.body, keepAlive, getCorsHeader(clientRequest));
+                return;
+            }
+            JSONObject message = clientRequest.newMessage(conn.hostname, conn.ip, route.getParams(), parameters);
+            if (method == Method.POST || method == Method.PUT) {
+                if (request.body != null)
+                    message.put("body", Server.readBody(method, request.headers.get("content-type"), request.body));
+                message.put("files", request.uploads != null ? request.uploads.toJSON() : new JSONArray());
+            }
+
+            Session session = clientRequest.open();
+            if (session == null) {
+                send(conn, Status.SERVICE_UNAVAILABLE, "text/plain", "too many requests in progress", false, "Retry-After: " + options.retryAfter + "\r\n");
+                return;
+            }
+            exchange = new Exchange(conn, session, keepAlive, clientRequest, request.uploads);
+            conn.parked = exchange;
+            conn.key.interestOps(0);
+            deadlines.add(exchange);
+            Exchange parked = exchange;
+            session.onDone(() -> {
+                answered.add(parked);
+                selector.wakeup();
+            });
+            Server.universal.send(serveRequest, session.id, message);
+        } catch (Exception e) {
+            if (exchange != null)
+                abandon(exchange);
+            send(conn, Status.INTERNAL_ERROR, "text/plain", "", keepAlive, "");
+        }
+    }
+
+    private static String getCorsHeader(Server.ClientRequest clientRequest) {
+        return clientRequest.cors ? "Access-Control-Allow-Origin: *\r\n" : "";
+    }
+
+    private void finishAnswered() {
+        Exchange exchange;
+        while ((exchange = answered.poll()) != null) {
+            if (!exchange.finished) {
+                finish(exchange);
+                process(exchange.conn);
+            }
+        }
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        Exchange next;
+        while ((next = deadlines.peek()) != null && now - next.session.expiresAt >= 0) {
+            finish(next);
+            process(next.conn);
+        }
+    }
+
+    // the session of the exchange has ended: answered, aborted or expired
+    private void finish(Exchange exchange) {
+        try {
+            respond(exchange);
+        } finally {
+            exchange.releaseUploads();
+        }
+    }
+
+    private void respond(Exchange exchange) {
+        exchange.finished = true;
+        deadlines.remove(exchange);
+        Answer uniResp = exchange.session.close();
+        Server.sessions.close(exchange.session, uniResp);
+        Connection conn = exchange.conn;
+        conn.parked = null;
+        if (!conn.channel.isOpen())
+            return;
+
+        IStatus status;
+        try {
+            status = exchange.clientRequest.getStatus(exchange.session, uniResp);
+        } catch (ResponseException e) {
+            //no answer or an invalid one
+            send(conn, e.getStatus(), "text/plain", e.getMessage(), exchange.keepAlive, "");
+            return;
+        }
+        String headers = getCorsHeader(exchange.clientRequest);
+        if (uniResp.stream)
+            sendStream(conn, status, uniResp.mimeType, ResponseStream.open(uniResp.sessionID), exchange.clientRequest.timeout, exchange.keepAlive, headers);
+        else if (uniResp.file != null)
+            sendFile(conn, status, uniResp.mimeType, uniResp.file, exchange.keepAlive, headers);
+        else if (uniResp.bytes != null)
+            send(conn, status, uniResp.mimeType, uniResp.bytes, exchange.keepAlive, headers);
+        else
+            send(conn, status, uniResp.mimeType, uniResp.body, exchange.keepAlive, headers);
+    }
+
+    // nobody waits for the answer anymore, the session is not counted as expired
+    private void abandon(Exchange exchange) {
+        exchange.finished = true;
+        deadlines.remove(exchange);
+        exchange.conn.parked = null;
+        exchange.session.abort();
+        exchange.session.close();
+        Server.sessions.close(exchange.session, null);
+        exchange.releaseUploads();
+    }
+
+    // headers: additional header lines, each ending with \r\n
+    private void send(Connection conn, IStatus status, String mimeType, String body, boolean keepAlive, String headers) {
+        send(conn, status, mimeType, body.getBytes(StandardCharsets.UTF_8), keepAlive, headers);
+    }
+
+    private void send(Connection conn, IStatus status, String mimeType, byte[] content, boolean keepAlive, String headers) {
+        byte[] head = getHead(status, mimeType, "Content-Length: " + content.length + "\r\n", keepAlive, headers);
+        ByteBuffer out = ByteBuffer.allocate(head.length + content.length);
+        out.put(head).put(content).flip();
+        startWriting(conn, out, keepAlive);
+    }
+
+    // a native file, see Server.getNativeFile()
+    private void sendFile(Connection conn, IStatus status, String mimeType, String reference, boolean keepAlive, String headers) {
+        File file;
+        try {
+            file = Server.getNativeFile(reference);
+        } catch (IOException e) {
+            file = null;
+        }
+        if (file == null)
+            send(conn, Status.NOT_FOUND, "text/plain", "", keepAlive, "");
+        else
+            sendFile(conn, status, mimeType, file, 0, file.length(), false, keepAlive, headers);
+    }
+
+    // length bytes from offset, only the head for a HEAD request
+    private void sendFile(Connection conn, IStatus status, String mimeType, File file, long offset, long length, boolean headOnly, boolean keepAlive, String headers) {
+        if (!headOnly) {
+            try {
+                conn.file = new FileInputStream(file).getChannel();
+            } catch (IOException e) {
+                send(conn, Status.NOT_FOUND, "text/plain", "", keepAlive, "");
+                return;
+            }
+            conn.filePosition = offset;
+            conn.fileRemaining = length;
+        }
+        startWriting(conn, ByteBuffer.wrap(getHead(status, mimeType, "Content-Length: " + length + "\r\n", keepAlive, headers)), keepAlive);
+    }
+
+    // see Server.serveStaticFile(), 404 if the uri is not below a static mount
+    private void sendStaticFile(Connection conn, String method, String uri, Map<String, String> requestHeaders, boolean keepAlive) {
+        StaticFiles.Reply reply;
+        try {
+            reply = Server.staticFiles.serve(method, uri, requestHeaders);
+        } catch (IOException e) {
+            send(conn, Status.INTERNAL_ERROR, "text/plain", "", keepAlive, "");
+            return;
+        }
+        if (reply == null) {
+            send(conn, Status.NOT_FOUND, "text/plain", "", keepAlive, "");
+            return;
+        }
+        StringBuilder headers = new StringBuilder();
+        for (Map.Entry<String, String> header : reply.headers.entrySet())
+            headers.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        if (reply.file == null)
+            send(conn, reply.status, reply.mimeType, "", keepAlive, headers.toString());
+        else
+            sendFile(conn, reply.status, reply.mimeType, reply.file, reply.offset, reply.length, method.equals("HEAD"), keepAlive, headers.toString());
+    }
+
+    // Transfer-Encoding: chunked, each chunk is written as soon as it arrives
+    private void sendStream(Connection conn, IStatus status, String mimeType, ResponseStream stream, long timeoutMillis, boolean keepAlive, String headers) {
+        conn.stream = stream;
+        conn.streamTimeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        stream.onChunk(() -> {
+            streaming.add(conn);
+            selector.wakeup();
+        });
+        startWriting(conn, ByteBuffer.wrap(getHead(status, mimeType, "Transfer-Encoding: chunked\r\n", keepAlive, headers)), keepAlive);
+    }
+
+    private byte[] getHead(IStatus status, String mimeType, String length, boolean keepAlive, String headers) {
+        String head = "HTTP/1.1 " + status.getDescription() + "\r\n"
+                + "Content-Type: " + mimeType + "\r\n"
+                + "Date: " + dateFormat.format(new Date()) + "\r\n"
+                + length
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                + headers + "\r\n";
+        return head.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void startWriting(Connection conn, ByteBuffer out, boolean keepAlive) {
+        conn.out = out;
+        conn.closeAfterWrite = !keepAlive;
+        try {
+            write(conn);
+        } catch (IOException | CancelledKeyException e) {
+            close(conn);
+        }
+    }
+
+    private static boolean isWriting(Connection conn) {
+        return conn.out != null || conn.file != null || conn.stream != null;
+    }
+
+    // true if the response has been written completely and the connection stays open
+    private boolean write(Connection conn) throws IOException {
+        if (!isWriting(conn))
+            return false;
+        while (true) {
+            if (conn.out != null) {
+                conn.channel.write(conn.out);
+                conn.lastActivity = System.nanoTime();
+                if (conn.out.hasRemaining()) {
+                    conn.key.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+                conn.out = null;
+            }
+            if (conn.file != null) {
+                long sent = conn.file.transferTo(conn.filePosition, conn.fileRemaining, conn.channel);
+                conn.filePosition += sent;
+                conn.fileRemaining -= sent;
+                conn.lastActivity = System.nanoTime();
+                if (conn.fileRemaining > 0) {
+                    conn.key.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+                closeQuietly(conn.file);
+                conn.file = null;
+            }
+            if (conn.stream == null)
+                break;
+            ResponseStream.Chunk chunk = conn.stream.poll();
+            if (chunk == null) {
+                // resumed when the next chunk arrives
+                conn.key.interestOps(0);
+                return false;
+            }
+            ResponseStream.acknowledge(chunk);
+            conn.out = encodeChunk(chunk);
+            if (chunk.last) {
+                conn.stream.close();
+                conn.stream = null;
+            }
+        }
+        if (conn.closeAfterWrite) {
+            close(conn);
+            return false;
+        }
+        conn.key.interestOps(SelectionKey.OP_READ);
+        return true;
+    }
+
+    // size in hex, data; an empty chunk would end the body, the last chunk is followed by the end
+    private static ByteBuffer encodeChunk(ResponseStream.Chunk chunk) {
+        if (chunk.data.length == 0)
+            return ByteBuffer.wrap(chunk.last ? "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII) : new byte[0]);
+        byte[] size = (Integer.toHexString(chunk.data.length) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] end = (chunk.last ? "\r\n0\r\n\r\n" : "\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer out = ByteBuffer.allocate(size.length + chunk.data.length + end.length);
+        out.put(size).put(chunk.data).put(end).flip();
+        return out;
+    }
+
+    private void resumeStreams() {
+        Connection conn;
+        while ((conn = streaming.poll()) != null) {
+            if (conn.stream == null || conn.out != null || conn.file != null || !conn.channel.isOpen())
+                continue;
+            try {
+                if (write(conn))
+                    process(conn);
+            } catch (IOException | CancelledKeyException e) {
+                close(conn);
+            }
+        }
+    }
+
+    private void closeIdle() {
+        long now = System.nanoTime();
+        if (now - lastIdleCheck < TimeUnit.SECONDS.toNanos(1))
+            return;
+        lastIdleCheck = now;
+        long timeout = TimeUnit.SECONDS.toNanos(options.keepAliveTimeout);
+        for (Connection conn : new ArrayList<>(connections)) {
+            // a stream waits for its next chunk as long as for an answer
+            if (conn.parked == null && now - conn.lastActivity > (conn.stream != null ? conn.streamTimeout : timeout))
+                close(conn);
+        }
+    }
+
+    private void close(Connection conn) {
+        connections.remove(conn);
+        if (conn.parked != null)
+            abandon(conn.parked);
+        if (conn.file != null)
+            closeQuietly(conn.file);
+        if (conn.stream != null)
+            conn.stream.close();
+        if (conn.upload != null) {
+            closeQuietly(conn.upload.channel);
+            conn.upload.request.uploads.release();
+            conn.upload = null;
+        }
+        if (conn.key != null)
+            conn.key.cancel();
+        try {
+            conn.channel.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private static void closeQuietly(FileChannel file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+        }
+    }
+
+    private void shutdown() {
+        for (Connection conn : new ArrayList<>(connections)) {
+            close(conn);
+        }
+        openConnections = 0;
+        parkedExchanges = 0;
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+        }
+    }
+}
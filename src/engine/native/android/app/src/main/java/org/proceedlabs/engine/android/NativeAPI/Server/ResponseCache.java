@@ -0,0 +1,173 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * answers of the universal part to GET requests, sent again without the IPC until their ttl is up
+ *
+ * opt-in per route with the serve option {cacheTTL: ms}. keyed by method, path and query, the params are part of the path.
+ * only 200 answers with a text or byte body are kept. a POST, PUT or DELETE to a path drops its entries, the universal part
+ * drops entries with "invalidate_cache", replacing or unserving a route drops its entries.
+ * the bodies are bounded by the cacheSize of the ServerOptions, the least recently used are evicted first
+ *
+ * a GET takes the generation when it is sent to the universal part. if its path (or a path above it) is invalidated
+ * while the GET waits for the answer, the answer may be older than the change and is not kept
+ * */
+class ResponseCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    // the generation of the last invalidation, per hash of the invalidated path. a collision only skips a put
+    private final long[] invalidatedAt = new long[64];
+    private long generation;
+
+    static class Entry {
+        final NativeRequest serveRequest;
+        final String uri;
+        final String mimeType;
+        final byte[] body;
+        final long expiresAt;
+
+        Entry(NativeRequest serveRequest, String uri, String mimeType, byte[] body, long ttlMillis) {
+            this.serveRequest = serveRequest;
+            this.uri = uri;
+            this.mimeType = mimeType;
+            this.body = body;
+            this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+    }
+
+    ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // the query in a fixed order, "a=1&b=2" and "b=2&a=1" share an entry
+    static String key(String method, String uri, Map<String, List<String>> query) {
+        return method + " " + uri + (query.isEmpty() ? "" : "?" + new TreeMap<>(query));
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    // null if there is no fresh entry from this route
+    synchronized Entry get(String key, NativeRequest serveRequest) {
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.serveRequest != serveRequest || System.nanoTime() - entry.expiresAt >= 0)) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null)
+            misses++;
+        else
+            hits++;
+        return entry;
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    // generation: taken before the request was sent to the universal part
+    synchronized void put(String key, Entry entry, long generation) {
+        if (entry.body.length > maxBytes || isInvalidatedSince(entry.uri, generation))
+            return;
+        remove(key);
+        entries.put(key, entry);
+        bytes += entry.body.length;
+        evict();
+    }
+
+    // drops the entries of the uri and below it, all entries for "/". the number of dropped entries
+    synchronized int invalidate(String uri) {
+        invalidatedAt[slot(stripSlash(uri))] = ++generation;
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        int dropped = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.uri.equals(uri) || entry.uri.startsWith(prefix)) {
+                it.remove();
+                bytes -= entry.body.length;
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    // drops the entries of a route that is no longer served
+    synchronized void invalidate(NativeRequest serveRequest) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.serveRequest == serveRequest) {
+                it.remove();
+                bytes -= entry.body.length;
+            }
+        }
+    }
+
+    // true if the uri or a path above it has been invalidated after the generation
+    private boolean isInvalidatedSince(String uri, long since) {
+        if (generation == since)
+            return false;
+        String path = stripSlash(uri);
+        while (true) {
+            if (invalidatedAt[slot(path)] > since)
+                return true;
+            int slash = path.lastIndexOf('/');
+            if (slash < 0 || path.equals("/"))
+                return false;
+            path = slash == 0 ? "/" : path.substring(0, slash);
+        }
+    }
+
+    private static String stripSlash(String uri) {
+        return uri.length() > 1 && uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri;
+    }
+
+    private int slot(String path) {
+        return (path.hashCode() & 0x7fffffff) % invalidatedAt.length;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            bytes -= removed.body.length;
+    }
+
+    // least recently used first
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().body.length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    synchronized JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+}
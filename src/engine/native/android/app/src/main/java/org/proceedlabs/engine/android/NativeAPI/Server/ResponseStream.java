@@ -0,0 +1,181 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * an answer of the universal part that is sent to the client in chunks (Transfer-Encoding: chunked)
+ *
+ * the "respond" request has the option {stream: true}, the body follows with "respond_chunk" requests:
+ * [sessionID, seq, data, last, encoding?]. IPC requests may be handled out of order, chunks are sent by seq.
+ * a chunk request is answered once the chunk has been handed to the client connection, the universal part should
+ * wait for that answer before it sends more than MAX_BUFFERED chunks. the stream ends with the last chunk,
+ * when the client is gone or when no chunk arrives within the timeout of the route
+ * */
+class ResponseStream {
+    static final int MAX_BUFFERED = 8;
+    private static final ConcurrentHashMap<String, ResponseStream> streams = new ConcurrentHashMap<>();
+
+    static class Chunk {
+        final byte[] data;
+        final boolean last;
+        final NativeRequest request;
+
+        Chunk(byte[] data, boolean last, NativeRequest request) {
+            this.data = data;
+            this.last = last;
+            this.request = request;
+        }
+    }
+
+    private final String sessionID;
+    private final HashMap<Integer, Chunk> buffered = new HashMap<>();
+    private int nextSeq;
+    private boolean closed;
+    private volatile boolean claimed;
+    private Runnable listener;
+
+    private ResponseStream(String sessionID) {
+        this.sessionID = sessionID;
+    }
+
+    // the stream of the session, created by "respond" or by a chunk that arrived first
+    static ResponseStream open(String sessionID) {
+        ResponseStream created = new ResponseStream(sessionID);
+        ResponseStream existing = streams.putIfAbsent(sessionID, created);
+        return existing != null ? existing : created;
+    }
+
+    static ResponseStream get(String sessionID) {
+        return streams.get(sessionID);
+    }
+
+    // the session ended without a stream answer
+    static void discard(String sessionID) {
+        ResponseStream stream = streams.get(sessionID);
+        if (stream != null)
+            stream.close();
+    }
+
+    // the session is answered with this stream, it outlives the session
+    void claim() {
+        claimed = true;
+    }
+
+    boolean isClaimed() {
+        return claimed;
+    }
+
+    // false if the stream is closed, the seq has already arrived or too many chunks are waiting
+    boolean add(int seq, byte[] data, boolean last, NativeRequest request) {
+        Runnable listener;
+        synchronized (this) {
+            if (closed || seq < nextSeq || buffered.containsKey(seq) || buffered.size() >= MAX_BUFFERED)
+                return false;
+            buffered.put(seq, new Chunk(data, last, request));
+            listener = this.listener;
+            notifyAll();
+        }
+        if (listener != null)
+            listener.run();
+        return true;
+    }
+
+    // runs on the thread adding a chunk, the NIO backend wakes its selector
+    synchronized void onChunk(Runnable listener) {
+        this.listener = listener;
+    }
+
+    // the next chunk in order, null if it has not arrived yet
+    synchronized Chunk poll() {
+        Chunk chunk = buffered.remove(nextSeq);
+        if (chunk != null)
+            nextSeq++;
+        return chunk;
+    }
+
+    // waits for the next chunk, null if the stream has been closed or the timeout is up
+    synchronized Chunk take(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Chunk chunk;
+        while ((chunk = poll()) == null && !closed) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0)
+                return null;
+            wait(remaining);
+        }
+        return chunk;
+    }
+
+    // the chunk has been handed to the client connection
+    static void acknowledge(Chunk chunk) {
+        Server.universal.answer(chunk.request);
+    }
+
+    void close() {
+        HashMap<Integer, Chunk> rejected;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            rejected = new HashMap<>(buffered);
+            buffered.clear();
+            notifyAll();
+        }
+        streams.remove(sessionID, this);
+        for (Chunk chunk : rejected.values())
+            Server.universal.reject(chunk.request, "the stream of session " + sessionID + " is closed, the client is no longer waiting");
+    }
+
+    // the body for NanoHTTPD's chunked response, read on the HTTP thread. closing it closes the stream
+    InputStream asInputStream(long timeoutMillis) {
+        return new InputStream() {
+            private Chunk current;
+            private int offset;
+            private boolean ended;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                while (current == null || offset == current.data.length) {
+                    if (current != null) {
+                        acknowledge(current);
+                        ended = current.last;
+                        current = null;
+                    }
+                    if (ended)
+                        return -1;
+                    try {
+                        current = take(timeoutMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("the server is stopping");
+                    }
+                    if (current == null)
+                        throw new IOException("no chunk of session " + sessionID + " within " + timeoutMillis + " ms");
+                    offset = 0;
+                }
+                int count = Math.min(len, current.data.length - offset);
+                System.arraycopy(current.data, offset, buffer, off, count);
+                offset += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+                ResponseStream.this.close();
+            }
+        };
+    }
+}
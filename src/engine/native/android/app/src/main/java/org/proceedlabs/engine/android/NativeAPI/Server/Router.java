@@ -0,0 +1,208 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/*
+ * routing trie of the served paths, one node per path segment:
+ * static segments are children by name, segments with ":" are parameter children by the whole segment,
+ * so /a/:id and /a/:name are separate routes. paths with the same segments (e.g. /a and /a/) end at the same node,
+ * the node keeps all of them in the order they were registered
+ *
+ * matching walks the segments of the URI once and captures the parameters on the way,
+ * its cost depends on the depth of the path and not on the number of routes.
+ * if several routes match, the one registered first wins, as with the former linear scan over Server.paths
+ *
+ * readers never lock: add() and remove() copy the nodes on the way to the changed route and publish a new root
+ * */
+class Router {
+    private volatile Node root = new Node();
+    private long nextOrder;
+
+    static class Match {
+        final LinkedHashMap<NanoHTTPD.Method, NativeRequest> methods;
+        private final String[] paramNames;
+        private final String[] paramValues;
+
+        private Match(Route route, String[] paramValues) {
+            this.methods = route.methods;
+            this.paramNames = route.paramNames;
+            this.paramValues = paramValues;
+        }
+
+        // :id -like parameters of the URI
+        JSONObject getParams() throws JSONException {
+            JSONObject params = new JSONObject();
+            for (int i = 0; i < paramNames.length; i++) {
+                params.put(paramNames[i], paramValues[i]);
+            }
+            return params;
+        }
+    }
+
+    private static class Route {
+        final String path;
+        final LinkedHashMap<NanoHTTPD.Method, NativeRequest> methods;
+        final String[] paramNames;
+        final long order;
+
+        Route(String path, LinkedHashMap<NanoHTTPD.Method, NativeRequest> methods, String[] paramNames, long order) {
+            this.path = path;
+            this.methods = methods;
+            this.paramNames = paramNames;
+            this.order = order;
+        }
+    }
+
+    private static class Node {
+        HashMap<String, Node> children = new HashMap<>();
+        HashMap<String, Node> params = new HashMap<>();
+        // the routes ending here, the first one registered first
+        ArrayList<Route> routes = new ArrayList<>();
+        // smallest order of the routes below and at this node, subtrees that can not win are skipped
+        long minOrder = Long.MAX_VALUE;
+
+        Node copy() {
+            Node copy = new Node();
+            copy.children = new HashMap<>(children);
+            copy.params = new HashMap<>(params);
+            copy.routes = new ArrayList<>(routes);
+            copy.minOrder = minOrder;
+            return copy;
+        }
+
+        long getOrder() {
+            return routes.isEmpty() ? Long.MAX_VALUE : routes.get(0).order;
+        }
+
+        void updateMinOrder() {
+            long min = getOrder();
+            for (Node child : children.values())
+                min = Math.min(min, child.minOrder);
+            for (Node param : params.values())
+                min = Math.min(min, param.minOrder);
+            minOrder = min;
+        }
+
+        boolean isEmpty() {
+            return routes.isEmpty() && params.isEmpty() && children.isEmpty();
+        }
+    }
+
+    // same segments as the former String.split("/") matching, a trailing "/" is ignored
+    static String[] getSegments(String path) {
+        return path.split("/");
+    }
+
+    private static boolean isParam(String segment) {
+        return segment.contains(":");
+    }
+
+    synchronized void add(String path, LinkedHashMap<NanoHTTPD.Method, NativeRequest> methods) {
+        String[] segments = getSegments(path);
+        List<String> paramNames = new ArrayList<>();
+        for (String segment : segments) {
+            if (isParam(segment))
+                paramNames.add(segment.substring(1));
+        }
+        root = add(root, segments, 0, new Route(path, methods, paramNames.toArray(new String[0]), nextOrder++));
+    }
+
+    // a path that is registered again replaces its route and is ordered as the last one
+    private static Node add(Node node, String[] segments, int depth, Route route) {
+        Node copy = node == null ? new Node() : node.copy();
+        if (depth == segments.length) {
+            removeRoute(copy.routes, route.path);
+            copy.routes.add(route);
+        } else {
+            HashMap<String, Node> children = isParam(segments[depth]) ? copy.params : copy.children;
+            children.put(segments[depth], add(children.get(segments[depth]), segments, depth + 1, route));
+        }
+        copy.updateMinOrder();
+        return copy;
+    }
+
+    synchronized void remove(String path) {
+        Node removed = remove(root, getSegments(path), 0, path);
+        root = removed == null ? new Node() : removed;
+    }
+
+    // null if the node has become empty, the routes of other paths at the same node are kept
+    private static Node remove(Node node, String[] segments, int depth, String path) {
+        if (node == null)
+            return null;
+        Node copy = node.copy();
+        if (depth == segments.length) {
+            removeRoute(copy.routes, path);
+        } else {
+            HashMap<String, Node> children = isParam(segments[depth]) ? copy.params : copy.children;
+            Node child = remove(children.get(segments[depth]), segments, depth + 1, path);
+            if (child == null)
+                children.remove(segments[depth]);
+            else
+                children.put(segments[depth], child);
+        }
+        copy.updateMinOrder();
+        return copy.isEmpty() ? null : copy;
+    }
+
+    private static void removeRoute(List<Route> routes, String path) {
+        for (int i = 0; i < routes.size(); i++) {
+            if (routes.get(i).path.equals(path)) {
+                routes.remove(i);
+                return;
+            }
+        }
+    }
+
+    // null if no route matches the URI
+    Match match(String uri) {
+        String[] segments = getSegments(uri);
+        Search search = new Search(segments.length);
+        search.run(root, segments, 0, 0);
+        return search.best == null ? null : new Match(search.best, search.bestValues);
+    }
+
+    private static class Search {
+        final String[] values;
+        Route best;
+        String[] bestValues;
+
+        Search(int depth) {
+            values = new String[depth];
+        }
+
+        long bestOrder() {
+            return best == null ? Long.MAX_VALUE : best.order;
+        }
+
+        void run(Node node, String[] segments, int depth, int captured) {
+            if (depth == segments.length) {
+                if (node.getOrder() < bestOrder()) {
+                    best = node.routes.get(0);
+                    bestValues = Arrays.copyOf(values, captured);
+                }
+                return;
+            }
+            Node child = node.children.get(segments[depth]);
+            if (child != null && child.minOrder < bestOrder())
+                run(child, segments, depth + 1, captured);
+            for (Node param : node.params.values()) {
+                if (param.minOrder < bestOrder()) {
+                    values[captured] = segments[depth];
+                    run(param, segments, depth + 1, captured + 1);
+                }
+            }
+        }
+    }
+}
@@ -4,14 +4,24 @@ import android.util.Log;
 
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
-import org.proceedlabs.engine.android.Utility.FileIO;
+import org.proceedlabs.engine.android.FormatAPI.RawJSON;
+import org.proceedlabs.engine.android.IPC.IPCMetrics;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -20,41 +30,87 @@ import java.util.Map;
 import fi.iki.elonen.NanoHTTPD;
 
 //checke, options-request not present in express-implementation
-public class Server extends NanoHTTPD {
+public class Server extends NanoHTTPD implements HttpServer {
     public static LinkedHashMap<String, LinkedHashMap<Method, NativeRequest>> paths; //sore served Pathes here  map path -> methods, each method -> NativeRequest
-    public static LinkedHashMap<String, NativeRequest> uniVResponses;
+    static final Router router = new Router();   //compiled from paths, used to match the client requests
+    static final StaticFiles staticFiles = new StaticFiles();    //served from disk if no path matches
+    static final long DEFAULT_TIMEOUT = 10000;    //ms, overwritten by the "timeout" option of the serve request
+    //client requests waiting for the universal part at the same time. 1024 (was 256) so the NIO backend can park
+    //hundreds of slow requests, the NanoHTTPD backend is bounded by its worker threads before it reaches the limit
+    static final int MAX_SESSIONS = 1024;
+    static final SessionStore sessions = new SessionStore(MAX_SESSIONS);
+    static final ResponseCache cache = new ResponseCache(4L * 1024 * 1024);   //resized to the cacheSize by the ServerController
+
+    // sent to the universal part -> answer arrived, as seen by the HTTP thread
+    static final IPCMetrics.Histogram answerLatency = new IPCMetrics.Histogram();
+
+    static volatile HttpServer active;     //the running backend, set by the ServerController
+    static Universal universal = new Universal();
+    static volatile File[] fileRoots = new File[0];   //directories of the app whose files can be sent, set by the ServerController
 
     static {
         paths = new LinkedHashMap<>();
-        uniVResponses = new LinkedHashMap<>();
     }
 
-    int sessionCount = 0;
+    // hands the client requests to the universal part, the load test answers in its place
+    static class Universal {
+        void send(NativeRequest serveRequest, String sessionID, JSONObject clientRequest) {
+            new NativeResponse(serveRequest).put(sessionID).send(clientRequest);
+        }
+
+        // a chunk of a streamed answer has been handed to the client
+        void answer(NativeRequest chunkRequest) {
+            new NativeResponse(chunkRequest).send();
+        }
+
+        void reject(NativeRequest chunkRequest, String msg) {
+            new NativeResponse(chunkRequest).sendError(msg);
+        }
+    }
+
+    private final BoundedRunner workers;
+    private final ServerOptions options;
 
-    public Server(int port) {
+    Server(int port, ServerOptions options) {
         super(port);
+        this.options = options;
+        workers = new BoundedRunner(options);
+        setAsyncRunner(workers);
+        setServerSocketFactory(() -> new ServerSocket() {
+            // NanoHTTPD binds without a backlog
+            @Override
+            public void bind(SocketAddress endpoint) throws IOException {
+                super.bind(endpoint, Math.max(1, Server.this.options.acceptBacklog));
+            }
+        });
     }
 
-    private Server(String hostname, int port) {
-        super(hostname, port);
+    // idle keep-alive connections are closed after the keepAliveTimeout
+    @Override
+    public void start() throws IOException {
+        start(options.keepAliveTimeout * 1000, true);
     }
 
-    private synchronized String getSessionID() {
-        return "" + sessionCount++;
+    // a client connection, the BoundedRunner needs its socket to turn the client away
+    class Connection extends ClientHandler {
+        final Socket socket;
+
+        Connection(InputStream inputStream, Socket socket) {
+            super(inputStream, socket);
+            this.socket = socket;
+        }
+    }
+
+    @Override
+    protected ClientHandler createClientHandler(Socket finalAccept, InputStream inputStream) {
+        return new Connection(inputStream, finalAccept);
     }
 
     private NanoHTTPD.Response serveOptionsRequest(NanoHTTPD.IHTTPSession session) {
         Log.i("body", session.getParameters() + "");
         Response resp = newFixedLengthResponse("");
-        String supportedMethods = "";
-
-        LinkedHashMap<Method, NativeRequest> path = getSupportedMethodsByURL(session.getUri());
-        for (Method method : path.keySet()) {
-            supportedMethods += method + ", ";
-        }
-        supportedMethods = supportedMethods.substring(0, supportedMethods.length() - 2);
 
-        resp.addHeader("Access-Control-Allow-Methods", supportedMethods);
+        resp.addHeader("Access-Control-Allow-Methods", getSupportedMethods(session.getUri()));
         resp.addHeader("Access-Control-Allow-Origin", "*");
         resp.addHeader("Access-Control-Allow-Headers", "*");
 
@@ -68,114 +124,339 @@ public class Server extends NanoHTTPD {
      * 1. check if URL is in the supported-paths "paths" List
      * 2. check if http-Method is as specified by the supported-path
      * 3. send the client request to the universal part
-     * 4. wait for the anser of the universal part
+     * 4. wait for the anser of the universal part, ServerController.respond() wakes the waiting thread
      * 5. send the anser to the client
      *
      * */
     @Override
     public NanoHTTPD.Response serve(NanoHTTPD.IHTTPSession session) {
+        Response resp = route(session);
+        // do not keep a thread for an idle connection while others wait for one
+        if (workers.isBusy())
+            resp.closeConnection(true);
+        return resp;
+    }
+
+    private NanoHTTPD.Response route(NanoHTTPD.IHTTPSession session) {
         if (session.getMethod() == Method.OPTIONS)
             return serveOptionsRequest(session);
 
-        LinkedHashMap<Method, NativeRequest> path = getSupportedMethodsByURL(session.getUri());
+        Router.Match route = router.match(session.getUri());
 
-        if (path == null)  //Path not served
-            return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", ""); //error path not known
+        if (route == null) { //Path not served
+            Response file = serveStaticFile(session);
+            return file != null ? file : newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", ""); //error path not known
+        }
 
-        NativeRequest serveRequest = path.get(session.getMethod());
+        NativeRequest serveRequest = route.methods.get(session.getMethod());
         if (serveRequest == null) //method not served
             return newFixedLengthResponse(Response.Status.METHOD_NOT_ALLOWED, "text/plain", "");
+        Uploads uploads = new Uploads();
         try {
+            ClientRequest clientRequest = new ClientRequest(serveRequest, session.getMethod(), session.getUri(), session.getParameters());
+            //answered before, without the universal part
+            ResponseCache.Entry cached = clientRequest.getCached();
+            if (cached != null) {
+                Response resp = newFixedLengthResponse(Response.Status.OK, cached.mimeType, new ByteArrayInputStream(cached.body), cached.body.length);
+                if (clientRequest.cors)
+                    resp.addHeader("Access-Control-Allow-Origin", "*");
+                return resp;
+            }
+
             //send to Universal
-            JSONObject univResponse = createMessageToUniversal(session, serveRequest);
-            String sessionID = getSessionID();
-            new NativeResponse(serveRequest).put(sessionID).send(univResponse);
-
-            //wait for answer
-            int sleepCyleCount = 0;
-            while (sleepCyleCount < 1000) {
-                try {
-                    Thread.currentThread().sleep(10);
-                } catch (InterruptedException e) {
-                }
-
-                //check for Answer
-                if (uniVResponses.containsKey(sessionID)) {
-                    //send Answer
-                    NativeRequest uniResp = uniVResponses.get(sessionID);
-                    String msg = uniResp.getArgs().getString(0);
-                    int statusCode = uniResp.getArgs().getInt(2);
-                    String contentTxpe = uniResp.getArgs().getString(3);
-
-                    Response.IStatus mapedStatusCode = Response.Status.lookup(statusCode);
-                    if (mapedStatusCode == null) {
-                        Log.i("statusCodeErr", statusCode + "");
-                        new NativeResponse(uniResp).sendError("der gewünschte Status-Code wird nicht unterstützt");
-                        return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", "unsopported internal HTTP-status-Code");
-                    }
-
-                    Response resp = newFixedLengthResponse(mapedStatusCode, contentTxpe, msg);
-                    if (serveRequest.getArgs().getJSONObject(2).optBoolean("cors", false))
-                        resp.addHeader("Access-Control-Allow-Origin", "*");
-                    return resp;
-                }
+            JSONObject univResponse = createMessageToUniversal(session, clientRequest, route.getParams(), uploads);
+            Session waiting = clientRequest.open();
+            if (waiting == null)
+                return newServiceUnavailableResponse("too many requests in progress");
+            Answer uniResp = null;
+            try {
+                universal.send(serveRequest, waiting.id, univResponse);
+                //wait for answer
+                uniResp = waiting.await();
+            } catch (InterruptedException e) {
+                //the server is stopping
+                Thread.currentThread().interrupt();
+                return newFixedLengthResponse(Response.Status.SERVICE_UNAVAILABLE, "text/plain", "server stopped");
+            } finally {
+                sessions.close(waiting, uniResp);
             }
-            //Universal has not responded
-            return newFixedLengthResponse(Response.Status.REQUEST_TIMEOUT, "text/plain", "timeout");
 
+            Response.IStatus mapedStatusCode;
+            try {
+                mapedStatusCode = clientRequest.getStatus(waiting, uniResp);
+            } catch (ResponseException ex) {
+                //no answer or an invalid one
+                return newFixedLengthResponse(ex.getStatus(), "text/plain", ex.getMessage());
+            }
+
+            //send Answer
+            Response resp = newAnswerResponse(mapedStatusCode, uniResp, clientRequest.timeout);
+            if (clientRequest.cors && resp.getStatus() == mapedStatusCode)
+                resp.addHeader("Access-Control-Allow-Origin", "*");
+            return resp;
+
+        } catch (ResponseException ex) {
+            //the rest of the body has not been read
+            Response resp = newFixedLengthResponse(ex.getStatus(), "text/plain", ex.getMessage());
+            resp.closeConnection(true);
+            return resp;
         } catch (Exception ex) {
             //error handling
+        } finally {
+            uploads.release();
         }
         return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", ""); //error path not known
     }
 
-    private JSONObject createMessageToUniversal(NanoHTTPD.IHTTPSession session, NativeRequest serveRequest) throws JSONException {
-        JSONObject univResp = new JSONObject();
-        univResp.put("hostname", session.getRemoteHostName());
-        univResp.put("ip", session.getRemoteIpAddress());
-        univResp.put("method", session.getMethod());
-        univResp.put("params", getParams(serveRequest, session.getUri()));
-        univResp.put("query", formatParameters(session.getParameters()));
-        univResp.put("path", session.getUri());
-        univResp.put("files", new JSONArray());
-        if (session.getMethod() == Method.POST || session.getMethod() == Method.PUT) {
+    // text, bytes and files are sent with their Content-Length, streams chunked
+    private static Response newAnswerResponse(Response.IStatus status, Answer uniResp, long timeout) throws IOException {
+        if (uniResp.stream)
+            return newChunkedResponse(status, uniResp.mimeType, ResponseStream.open(uniResp.sessionID).asInputStream(timeout));
+        if (uniResp.file != null) {
+            File file = getNativeFile(uniResp.file);
+            if (file == null)
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, "text/plain", "");
+            return newFixedLengthResponse(status, uniResp.mimeType, new FileInputStream(file), file.length());
+        }
+        if (uniResp.bytes != null)
+            return newFixedLengthResponse(status, uniResp.mimeType, new ByteArrayInputStream(uniResp.bytes), uniResp.bytes.length);
+        return newFixedLengthResponse(status, uniResp.mimeType, uniResp.body);
+    }
 
-            HashMap<String, String> map = new HashMap<>();
-            try {
-                session.parseBody(map);
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (ResponseException e) {
+    // the file of a {file: reference} answer: an upload handle or a path inside one of the fileRoots, null if there is none
+    static File getNativeFile(String reference) throws IOException {
+        File upload = Uploads.get(reference);
+        if (upload != null)
+            return upload.isFile() ? upload : null;
+        File file = new File(reference).getCanonicalFile();
+        return isInFileRoots(file) && file.isFile() ? file : null;
+    }
+
+    // file: canonical
+    static boolean isInFileRoots(File file) throws IOException {
+        for (File root : fileRoots) {
+            if (file.getPath().startsWith(root.getCanonicalPath() + File.separator))
+                return true;
+        }
+        return false;
+    }
+
+    // null if the uri is not below a static mount
+    private static Response serveStaticFile(NanoHTTPD.IHTTPSession session) {
+        try {
+            StaticFiles.Reply reply = staticFiles.serve(session.getMethod().name(), session.getUri(), session.getHeaders());
+            if (reply == null)
+                return null;
+            Response resp;
+            if (reply.file == null) {
+                resp = newFixedLengthResponse(reply.status, reply.mimeType, "");
+            } else if (session.getMethod() == Method.HEAD) {
+                // NanoHTTPD sends the body of HEAD responses, it stops at the end of the stream
+                resp = newFixedLengthResponse(reply.status, reply.mimeType, new ByteArrayInputStream(new byte[0]), reply.length);
+            } else {
+                FileChannel channel = new FileInputStream(reply.file).getChannel();
+                channel.position(reply.offset);
+                resp = newFixedLengthResponse(reply.status, reply.mimeType, Channels.newInputStream(channel), reply.length);
             }
+            for (Map.Entry<String, String> header : reply.headers.entrySet())
+                resp.addHeader(header.getKey(), header.getValue());
+            return resp;
+        } catch (IOException e) {
+            return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", "");
+        }
+    }
+
+    // files are sent as they are, a Range refers to their bytes
+    @Override
+    protected boolean useGzipWhenAccepted(Response r) {
+        return r.getHeader("Accept-Ranges") == null && super.useGzipWhenAccepted(r);
+    }
+
+    // the client may try again after retryAfter seconds
+    private Response newServiceUnavailableResponse(String msg) {
+        Response resp = newFixedLengthResponse(Response.Status.SERVICE_UNAVAILABLE, "text/plain", msg);
+        resp.addHeader("Retry-After", Integer.toString(options.retryAfter));
+        resp.closeConnection(true);
+        return resp;
+    }
+
+    @Override
+    public JSONObject getBackendStats() throws JSONException {
+        JSONObject stats = workers.getStats();
+        stats.put("backend", "nanohttpd");
+        return stats;
+    }
 
-            //get Request Body
-            if (session.getMethod() == Method.POST) {
-                final String json = map.get("postData");
-
-                // json or text?
-                if (session.getHeaders().get("content-type").contains("json"))
-                    univResp.put("body", new JSONObject(json));
-                else
-                    univResp.put("body", json);
-
-            } else if (session.getMethod() == Method.PUT) {
-                try {
-                    String path = map.get("content");
-                    Log.i("UploadFilesPath", path);
-                    File f = new File(path);
-                    String fielContent = FileIO.readFile(f);    //todo: test if working correctly, after reading whole Fle instead of just one line
-                    Log.i("UploadFilesContents ", fielContent);
-
-                    univResp.put("body", new JSONObject(fielContent));
-                } catch (Exception ex) {
-                }
+    public static JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        HttpServer server = active;
+        if (server != null)
+            stats.put("workers", server.getBackendStats());
+        stats.put("sessions", sessions.getStats());
+        stats.put("answerLatency", answerLatency.toJSON());
+        stats.put("cache", cache.getStats());
+        return stats;
+    }
+
+    /*
+     * a client request to a served route, the steps both backends take around the universal part:
+     * the cache lookup, the session, checking the answer and the CORS header.
+     * the backends read the body, send the message and wait for the answer in their own way
+     * */
+    static class ClientRequest {
+        final NativeRequest serveRequest;
+        final Method method;
+        final String uri;
+        final long timeout;
+        final boolean cors;
+        final long cacheTTL;
+        final String cacheKey;      // null if the answer is not cached
+        final long cacheGeneration;
+
+        ClientRequest(NativeRequest serveRequest, Method method, String uri, Map<String, List<String>> query) throws JSONException {
+            JSONObject options = serveRequest.getArgs().getJSONObject(2);
+            this.serveRequest = serveRequest;
+            this.method = method;
+            this.uri = uri;
+            timeout = options.optLong("timeout", DEFAULT_TIMEOUT);
+            cors = options.optBoolean("cors", false);
+            cacheTTL = options.optLong("cacheTTL", 0);
+            cacheKey = method == Method.GET && cacheTTL > 0 ? ResponseCache.key(method.name(), uri, query) : null;
+            // before the universal part is asked, a change to the path while it answers is not cached
+            cacheGeneration = cacheKey == null ? 0 : cache.getGeneration();
+        }
+
+        // null if there is no fresh answer in the cache
+        ResponseCache.Entry getCached() {
+            return cacheKey == null ? null : cache.get(cacheKey, serveRequest);
+        }
+
+        // the message to the universal part, without the body
+        JSONObject newMessage(String hostname, String ip, JSONObject params, Map<String, List<String>> query) throws JSONException {
+            JSONObject univResp = new JSONObject();
+            univResp.put("hostname", hostname);
+            univResp.put("ip", ip);
+            univResp.put("method", method);
+            univResp.put("params", params);
+            univResp.put("query", formatParameters(query));
+            univResp.put("path", uri);
+            univResp.put("files", new JSONArray());
+            return univResp;
+        }
+
+        // null if too many client requests wait for the universal part
+        Session open() {
+            return sessions.open(serveRequest, timeout);
+        }
+
+        /*
+         * the status to send the answer with, once the session has been closed. the answer is kept in the cache.
+         * throws with the status to send instead: the path is no longer served, the universal part has not answered or the answer is invalid
+         * */
+        Response.IStatus getStatus(Session session, Answer uniResp) throws ResponseException {
+            if (uniResp == null) {
+                //the path is no longer served
+                if (serveRequest.isCancelled() || session.isAborted())
+                    throw new ResponseException(Response.Status.SERVICE_UNAVAILABLE, String.valueOf(serveRequest.getCancelReason()));
+                //Universal has not responded
+                throw new ResponseException(Response.Status.REQUEST_TIMEOUT, "timeout");
             }
+            answerLatency.record(System.nanoTime() - session.startedAt);
+            updateCache(uniResp);
+
+            if (uniResp.mimeType == null || uniResp.isText() && uniResp.body == null) {
+                ResponseStream.discard(uniResp.sessionID);
+                throw new ResponseException(Response.Status.INTERNAL_ERROR, "");
+            }
+            Response.IStatus mapedStatusCode = Server.getStatus(uniResp);
+            if (mapedStatusCode == null) {
+                ResponseStream.discard(uniResp.sessionID);
+                throw new ResponseException(Response.Status.INTERNAL_ERROR, "unsopported internal HTTP-status-Code");
+            }
+            return mapedStatusCode;
+        }
+
+        // keeps a 200 answer with a text or byte body, other methods have changed what is cached for the path
+        private void updateCache(Answer uniResp) {
+            // also if the cache is empty, a GET in progress must not keep its answer
+            if (method != Method.GET)
+                cache.invalidate(uri);
+            if (cacheKey == null || uniResp.statusCode != 200 || uniResp.mimeType == null || uniResp.stream || uniResp.file != null)
+                return;
+            byte[] body = uniResp.bytes != null ? uniResp.bytes : uniResp.body == null ? null : uniResp.body.getBytes(StandardCharsets.UTF_8);
+            if (body != null)
+                cache.put(cacheKey, new ResponseCache.Entry(serveRequest, uri, uniResp.mimeType, body, cacheTTL), cacheGeneration);
+        }
+    }
+
+    /*
+     * the body is streamed: up to inlineBodySize it is passed in "body" (JSON or text for POST, JSON for PUT),
+     * JSON is only checked and spliced into the message as it is (RawJSON). larger bodies and multipart files are passed as handles in "files", see Uploads
+     * */
+    private JSONObject createMessageToUniversal(NanoHTTPD.IHTTPSession session, ClientRequest clientRequest, JSONObject params, Uploads uploads) throws JSONException, IOException, ResponseException {
+        JSONObject univResp = clientRequest.newMessage(session.getRemoteHostName(), session.getRemoteIpAddress(), params, session.getParameters());
+        if (session.getMethod() == Method.POST || session.getMethod() == Method.PUT) {
+            long size = session instanceof HTTPSession ? ((HTTPSession) session).getBodySize() : 0;
+            if (size > options.maxUploadSize)
+                throw new ResponseException(Response.Status.PAYLOAD_TOO_LARGE, "the request body exceeds " + options.maxUploadSize + " bytes");
+            String contentType = session.getHeaders().get("content-type");
+
+            if (contentType != null && contentType.contains("multipart/form-data"))
+                addMultipartFiles(session, uploads);
+            else if (size > options.inlineBodySize)
+                uploads.spool("body", contentType, session.getInputStream(), size);
+            else
+                univResp.put("body", readBody(session.getMethod(), contentType, readFully(session.getInputStream(), (int) size)));
+            univResp.put("files", uploads.toJSON());
         }
         return univResp;
     }
 
+    private static byte[] readFully(InputStream in, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            int read = in.read(bytes, offset, size - offset);
+            if (read < 0)
+                throw new IOException("the request body ended after " + offset + " of " + size + " bytes");
+            offset += read;
+        }
+        return bytes;
+    }
+
+    // the inline body of both backends: JSON or text for POST, JSON for PUT. null if there is no body to pass, a form is not passed
+    static Object readBody(Method method, String contentType, byte[] bytes) throws JSONException {
+        String body = new String(bytes, StandardCharsets.UTF_8);
+
+        if (method == Method.PUT) {
+            try {
+                return RawJSON.of(body);
+            } catch (JSONException e) {
+                return null;
+            }
+        }
+        if (contentType != null && (contentType.contains("application/x-www-form-urlencoded") || contentType.contains("multipart/")) || body.isEmpty())
+            return null;
+        // json or text?
+        if (contentType != null && contentType.contains("json"))
+            return RawJSON.of(body);
+        return body;
+    }
+
+    // NanoHTTPD stores multipart files in temporary files, which are deleted after the response.
+    // each file is stored under its field name (doc, doc1, ... if a field is repeated), the value of the field is the filename
+    private static void addMultipartFiles(NanoHTTPD.IHTTPSession session, Uploads uploads) throws IOException, ResponseException, JSONException {
+        Map<String, String> files = new HashMap<>();
+        session.parseBody(files);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            List<String> filenames = session.getParameters().get(file.getKey());
+            String filename = filenames == null || filenames.isEmpty() ? null : filenames.get(0);
+            uploads.add(file.getKey(), filename, null, new File(file.getValue()));
+        }
+    }
+
     // put query parameters in a JSONObject
-    private JSONObject formatParameters(Map<String, List<String>> params) throws JSONException {
+    static JSONObject formatParameters(Map<String, List<String>> params) throws JSONException {
         JSONObject obj = new JSONObject();
 
         for (String s : params.keySet()) {
@@ -188,45 +469,49 @@ public class Server extends NanoHTTPD {
         return obj;
     }
 
-    //get :id -like parameters from URL
-    private JSONObject getParams(NativeRequest pathJSON, String req) throws JSONException {
-        String path = pathJSON.getArgs().getString(1);
-
-        JSONObject params = new JSONObject();
-
-        String[] pathArr = path.split("/");
-        String[] reqArr = req.split("/");
+    //find the original Serve-request (from universal) for this specific path
+    static LinkedHashMap<Method, NativeRequest> getSupportedMethodsByURL(String reqPath) {
+        Router.Match route = router.match(reqPath);
+        return route == null ? null : route.methods;
+    }
 
-        for (int i = 0; i < pathArr.length; i++) {
-            if (pathArr[i].contains(":"))
-                params.put(pathArr[i].substring(1), reqArr[i]);
+    // "GET, POST" for the Access-Control-Allow-Methods header
+    static String getSupportedMethods(String reqPath) {
+        String supportedMethods = "";
+        for (Method method : getSupportedMethodsByURL(reqPath).keySet()) {
+            supportedMethods += method + ", ";
         }
-        return params;
+        return supportedMethods.substring(0, supportedMethods.length() - 2);
     }
 
-    //find the original Serve-request (from universal) for this specific path
-    private LinkedHashMap<Method, NativeRequest> getSupportedMethodsByURL(String reqPath) {
-        for (String path : paths.keySet()) {
-            if (equals(path, reqPath))
-                return paths.get(path);
+    // status of an answer of the universal part, null (and an error to the universal part) if it is not supported
+    static Response.IStatus getStatus(Answer uniResp) {
+        int statusCode = uniResp.statusCode;
+        Response.IStatus mapedStatusCode = Response.Status.lookup(statusCode);
+        if (mapedStatusCode == null) {
+            Log.i("statusCodeErr", statusCode + "");
+            new NativeResponse(uniResp.request).sendError("der gewünschte Status-Code wird nicht unterstützt");
         }
-        return null;
+        return mapedStatusCode;
+    }
+
+    // the URI and query decoding of NanoHTTPD, for the NIO backend
+    static String decodeURI(String uri) {
+        return decodePercent(uri);
     }
 
-    //check, if a given request-URL matches a specific path-pattern
-    private boolean equals(String path, String request) {
-        String[] pathArr = path.split("/");
-        String[] reqArr = request.split("/");
+    static Map<String, List<String>> decodeQuery(String query) {
+        return decodeParameters(query);
+    }
 
-        if (reqArr.length > pathArr.length + 1) return false;   //URL to long
-        if (reqArr.length < pathArr.length) return false;   //URL to short
-        if (reqArr.length == pathArr.length + 1 && !reqArr[reqArr.length - 1].equals(""))
-            return false;   //edge-case: / at the end
+    // register a path that is not served yet, later methods are added to its map
+    static void addPath(String path, LinkedHashMap<Method, NativeRequest> methods) {
+        paths.put(path, methods);
+        router.add(path, methods);
+    }
 
-        for (int i = 0; i < pathArr.length; i++) {
-            //check if every sub-segment is equal, or parameter like :id
-            if (!reqArr[i].equals(pathArr[i]) && !pathArr[i].contains(":")) return false;
-        }
-        return true;
+    static void removePath(String path) {
+        paths.remove(path);
+        router.remove(path);
     }
 }
@@ -3,74 +3,199 @@ package org.proceedlabs.engine.android.NativeAPI.Server;
 import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
 import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.Workload;
+import org.proceedlabs.engine.android.NativeAPI.Configuration;
+import org.proceedlabs.engine.android.processor.IPCHandler;
 
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 
 import fi.iki.elonen.NanoHTTPD;
 
 public class ServerController extends IPCTask {
-    Server server;
+    HttpServer server;
 
-    public ServerController() {
-        taskNames = new String[]{"serve", "respond", "setport", "unsetport"};
-    }
 
+    // serve and respond only update the routing tables, starting and stopping the server blocks on sockets
     @Override
-    public void handle(NativeRequest req) throws JSONException, IOException {
+    public Workload getWorkload(NativeRequest req) {
         switch (req.getTaskName()) {
-            case "serve":
-                serve(req);
-                break;
-            case "respond":
-                respond(req);
-                break;
             case "setport":
-                setport(req);
-                break;
             case "unsetport":
-                unsetport(req);
-                break;
+            case "read_upload":
+            case "serve_static":
+                return Workload.IO;
+            default:
+                return Workload.CPU;
         }
     }
 
+    @IPCHandler("serve")
     public synchronized void serve(NativeRequest req) throws JSONException {
         String path = req.getArgs().getString(1);
 
-        LinkedHashMap<NanoHTTPD.Method, NativeRequest> pathMap;
-        if (Server.paths.containsKey(path))
-            pathMap = Server.paths.get(path);
-        else
+        LinkedHashMap<NanoHTTPD.Method, NativeRequest> pathMap = Server.paths.get(path);
+        if (pathMap == null) {
             pathMap = new LinkedHashMap<>();
+            Server.addPath(path, pathMap);
+        }
 
         NanoHTTPD.Method method = NanoHTTPD.Method.valueOf(req.getArgs().getString(0).toUpperCase());
-        pathMap.put(method, req);
+        NativeRequest replaced = pathMap.put(method, req);
+        if (replaced != null) {
+            req.getContext().ipcController.release(replaced);
+            Server.cache.invalidate(replaced);
+        }
+
+        // each client request is sent as a response to the serve request, cancelling it stops serving the path
+        req.keepOpen();
+        req.onCancel(() -> unserve(path, method, req));
+    }
 
-        Server.paths.put(path, pathMap);
+    private synchronized void unserve(String path, NanoHTTPD.Method method, NativeRequest req) {
+        LinkedHashMap<NanoHTTPD.Method, NativeRequest> pathMap = Server.paths.get(path);
+        if (pathMap == null || pathMap.get(method) != req)
+            return;
+        pathMap.remove(method);
+        if (pathMap.isEmpty())
+            Server.removePath(path);
+        Server.sessions.abort(req);
+        Server.cache.invalidate(req);
     }
 
     /*
-     * store the answer in the "uniVResponses" List, for the waitng resonse-thread to find it
+     * hand the answer to the HTTP thread waiting for this session, it is answered over HTTP instead of the IPC.
+     * answers to sessions that have expired (or never existed) are rejected
      * */
+    @IPCHandler("respond")
     public void respond(NativeRequest req) throws JSONException {
-        String sessionID = req.getArgs().getString(1);
-        Server.uniVResponses.put(sessionID, req);
+        Answer answer = Answer.of(req);
+        ResponseStream stream = answer.stream ? ResponseStream.open(answer.sessionID) : null;
+        if (stream != null)
+            stream.claim();
+        if (Server.sessions.complete(answer.sessionID, answer)) {
+            req.getContext().ipcController.answeredElsewhere(req);
+        } else {
+            if (stream != null)
+                stream.close();
+            new NativeResponse(req).sendError("the session " + answer.sessionID + " has expired, the client is no longer waiting");
+        }
+    }
+
+    /*
+     * drop cached answers (serve option cacheTTL), args: [path?] drops the answers for path and the paths below it,
+     * all answers without a path. answered with {dropped}
+     * */
+    @IPCHandler("invalidate_cache")
+    public void invalidateCache(NativeRequest req) throws JSONException {
+        String path = req.getArgs().optString(0, "/");
+        new NativeResponse(req).send(new JSONObject().put("dropped", Server.cache.invalidate(path.isEmpty() ? "/" : path)));
+    }
+
+    /*
+     * a chunk of an answer with the option {stream: true}, args: [sessionID, seq, data, last, encoding?].
+     * answered once the chunk has been sent to the client, see ResponseStream
+     * */
+    @IPCHandler("respond_chunk")
+    public void respondChunk(NativeRequest req) throws JSONException {
+        JSONArray args = req.getArgs();
+        String sessionID = args.getString(0);
+        int seq = args.getInt(1);
+        String data = args.isNull(2) ? "" : args.getString(2);
+        byte[] bytes = args.optString(4).equals("base64") ? Answer.decodeBase64(data) : data.getBytes(StandardCharsets.UTF_8);
+
+        // chunks may arrive before the answer
+        ResponseStream stream = ResponseStream.get(sessionID);
+        if (stream == null && Server.sessions.isOpen(sessionID)) {
+            stream = ResponseStream.open(sessionID);
+            if (!stream.isClaimed() && !Server.sessions.isOpen(sessionID))
+                stream.close();
+        }
+        if (stream == null || !stream.add(seq, bytes, args.optBoolean(3, false), req))
+            new NativeResponse(req).sendError("the chunk " + seq + " of session " + sessionID + " is rejected, the stream is closed or the chunk is not expected");
+    }
+
+    /*
+     * serve a directory or a single file of the app from disk, without the universal part: [path, target, options?]
+     * target is a directory (served below path) or a file (served at path) in the files or cache directory,
+     * options: {cors, maxAge} with maxAge in seconds for Cache-Control. see StaticFiles
+     * */
+    @IPCHandler("serve_static")
+    public void serveStatic(NativeRequest req) throws JSONException, IOException {
+        JSONArray args = req.getArgs();
+        String path = args.getString(0);
+        setFileRoots(req);
+        File target = new File(args.getString(1)).getCanonicalFile();
+        if (!target.exists() || !Server.isInFileRoots(target)) {
+            new NativeResponse(req).sendError("the target " + args.getString(1) + " does not exist or is not in the files or cache directory of the app");
+            return;
+        }
+        JSONObject options = args.optJSONObject(2);
+        boolean cors = options != null && options.optBoolean("cors", false);
+        long maxAge = options == null ? -1 : options.optLong("maxAge", -1);
+        Server.staticFiles.add(path, target, cors, maxAge);
+        new NativeResponse(req).send();
     }
 
+    @IPCHandler("unserve_static")
+    public void unserveStatic(NativeRequest req) throws JSONException {
+        if (Server.staticFiles.remove(req.getArgs().getString(0)))
+            new NativeResponse(req).send();
+        else
+            new NativeResponse(req).sendError("the path " + req.getArgs().getString(0) + " is not served from disk");
+    }
+
+    /*
+     * the content of a file uploaded with a client request, args: [handle] from the "files" of the client request.
+     * large files are sent in chunks, the handle is valid until the client request has been answered
+     * */
+    @IPCHandler("read_upload")
+    public void readUpload(NativeRequest req) throws JSONException {
+        String handle = req.getArgs().getString(0);
+        File file = Uploads.get(handle);
+        if (file == null || !file.isFile()) {
+            new NativeResponse(req).sendError("the upload " + handle + " does not exist, its client request has been answered");
+            return;
+        }
+        new NativeResponse(req).send(file, NativeResponse.FileCodec.BIN);
+    }
+
+    @IPCHandler("setport")
     public synchronized void setport(NativeRequest req) throws JSONException, IOException {
         if (server != null) {
             new NativeResponse(req).sendError("Server beretis gestartet");
             return;
         }
-        server = new Server(req.getArgs().getInt(0));
+        int port = req.getArgs().getInt(0);
+        Uploads.directory = new File(req.getContext().getCacheDir(), "uploads");
+        Uploads.clearDirectory();
+        setFileRoots(req);
+        ServerOptions options = new ServerOptions(Configuration.getConfig(req.getContext()).optJSONObject("http"));
+        Server.cache.setMaxBytes(options.cacheSize);
+        server = options.backend.equals("nio") ? new NioServer(port, options) : new Server(port, options);
         server.start();
+        Server.active = server;
         new NativeResponse(req).send();
     }
 
-    public void unsetport(NativeRequest req) {
-        server.stop();
+    // the directories of the app whose files can be sent over HTTP
+    private static void setFileRoots(NativeRequest req) {
+        Server.fileRoots = new File[]{req.getContext().getFilesDir(), req.getContext().getCacheDir()};
+    }
+
+    @IPCHandler("unsetport")
+    public synchronized void unsetport(NativeRequest req) {
+        if (server != null) {
+            server.stop();
+            server = null;
+            Server.active = null;
+        }
         new NativeResponse(req).send();
     }
 }
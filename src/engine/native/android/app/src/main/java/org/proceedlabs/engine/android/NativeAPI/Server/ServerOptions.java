@@ -0,0 +1,42 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.json.JSONObject;
+
+/*
+ * backend and limits of the HTTP server, from the "http" section of the configuration
+ *
+ * backend           "nanohttpd" (default) or "nio", see HttpServer
+ * maxThreads        client connections served at the same time (nanohttpd)
+ * acceptBacklog     accepted connections waiting for a free thread, also the backlog of the server socket
+ * maxConnections    open client connections (nio), further clients get a 503
+ * inlineBodySize    bytes of a request body passed inline, larger bodies are spooled to a file, see Uploads
+ * maxUploadSize     bytes of a request body, larger requests get a 413
+ * keepAliveTimeout  seconds an idle keep-alive connection is kept open for the next request
+ * retryAfter        seconds sent in the Retry-After header, when a client is turned away with 503
+ * cacheSize         bytes of the answers kept for routes with a cacheTTL, see ResponseCache
+ * */
+class ServerOptions {
+    final String backend;
+    final int maxThreads;
+    final int acceptBacklog;
+    final int maxConnections;
+    final int inlineBodySize;
+    final long maxUploadSize;
+    final int keepAliveTimeout;
+    final int retryAfter;
+    final long cacheSize;
+
+    ServerOptions(JSONObject http) {
+        if (http == null)
+            http = new JSONObject();
+        backend = http.optString("backend", "nanohttpd");
+        maxThreads = Math.max(1, http.optInt("maxThreads", 16));
+        acceptBacklog = Math.max(0, http.optInt("acceptBacklog", 32));
+        maxConnections = Math.max(1, http.optInt("maxConnections", 512));
+        inlineBodySize = Math.max(0, http.optInt("inlineBodySize", 1024 * 1024));
+        maxUploadSize = Math.max(0, http.optLong("maxUploadSize", 64L * 1024 * 1024));
+        keepAliveTimeout = Math.max(1, http.optInt("keepAliveTimeout", 5));
+        retryAfter = Math.max(1, http.optInt("retryAfter", 1));
+        cacheSize = Math.max(0, http.optLong("cacheSize", 4L * 1024 * 1024));
+    }
+}
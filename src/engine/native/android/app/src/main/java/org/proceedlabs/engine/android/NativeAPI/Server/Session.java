@@ -0,0 +1,91 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * a client request waiting for the answer of the universal part
+ *
+ * complete() hands over the answer of the universal part, abort() ends the session because the path is no longer served.
+ * the NanoHTTPD backend blocks its thread in await(), the NIO backend parks the session with onDone().
+ * once the session has been closed, later answers are rejected
+ * */
+class Session {
+    final String id;
+    final NativeRequest serveRequest;
+    final long startedAt = System.nanoTime();
+    final long expiresAt;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Answer answer;
+    private boolean closed;
+    private volatile boolean aborted;
+    private Runnable listener;
+
+    Session(String id, NativeRequest serveRequest, long ttlMillis) {
+        this.id = id;
+        this.serveRequest = serveRequest;
+        this.expiresAt = startedAt + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    // false if the session has already been answered or nobody waits for the answer anymore
+    boolean complete(Answer answer) {
+        Runnable listener;
+        synchronized (this) {
+            if (closed || this.answer != null || aborted || System.nanoTime() - expiresAt > 0)
+                return false;
+            this.answer = answer;
+            listener = this.listener;
+        }
+        done.countDown();
+        if (listener != null)
+            listener.run();
+        return true;
+    }
+
+    void abort() {
+        Runnable listener;
+        synchronized (this) {
+            if (aborted)
+                return;
+            aborted = true;
+            listener = answer == null ? this.listener : null;
+        }
+        done.countDown();
+        if (listener != null)
+            listener.run();
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    // runs once, when the session is answered or aborted (right away if it already is), on the thread doing so
+    void onDone(Runnable listener) {
+        synchronized (this) {
+            if (answer == null && !aborted) {
+                this.listener = listener;
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    // rejects later answers, returns the answer or null if there is none
+    synchronized Answer close() {
+        closed = true;
+        return answer;
+    }
+
+    // the answer, null if the ttl is up or the session has been aborted
+    Answer await() throws InterruptedException {
+        try {
+            done.await(expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            close();
+            throw e;
+        }
+        return close();
+    }
+}
@@ -0,0 +1,94 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * the client requests waiting for the answer of the universal part, by sessionID
+ *
+ * a session is opened by its HTTP thread and closed by the same thread once the answer has been consumed
+ * or its ttl is up, so no entry outlives its client request. the number of open sessions is bounded,
+ * further client requests are refused. answers to sessions that are no longer open are rejected
+ *
+ * expired   the ttl was up before the universal part answered
+ * orphaned  answers without a waiting session (late, aborted or unknown sessionID)
+ * refused   client requests turned away because the store was full
+ * */
+class SessionStore {
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final AtomicLong nextID = new AtomicLong();
+    private final int capacity;
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong orphaned = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    SessionStore(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // null if the store is full
+    Session open(NativeRequest serveRequest, long ttlMillis) {
+        if (openSessions.incrementAndGet() > capacity) {
+            openSessions.decrementAndGet();
+            refused.incrementAndGet();
+            return null;
+        }
+        Session session = new Session(Long.toString(nextID.getAndIncrement()), serveRequest, ttlMillis);
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    // removes the session, without an answer it counts as expired unless it has been aborted.
+    // chunks sent for a session that is not answered with a stream are rejected
+    void close(Session session, Answer answer) {
+        if (!sessions.remove(session.id, session))
+            return;
+        openSessions.decrementAndGet();
+        if (answer == null && !session.isAborted())
+            expired.incrementAndGet();
+        if (answer == null || !answer.stream)
+            ResponseStream.discard(session.id);
+    }
+
+    boolean isOpen(String sessionID) {
+        return sessions.containsKey(sessionID);
+    }
+
+    // hand the answer to the waiting HTTP thread, false if the answer is rejected
+    boolean complete(String sessionID, Answer answer) {
+        Session session = sessions.get(sessionID);
+        if (session != null && session.complete(answer))
+            return true;
+        orphaned.incrementAndGet();
+        return false;
+    }
+
+    // wake the threads waiting for the answers to a path that is no longer served
+    void abort(NativeRequest serveRequest) {
+        for (Session session : sessions.values()) {
+            if (session.serveRequest == serveRequest)
+                session.abort();
+        }
+    }
+
+    int size() {
+        return openSessions.get();
+    }
+
+    JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("open", openSessions.get());
+        stats.put("capacity", capacity);
+        stats.put("expired", expired.get());
+        stats.put("orphaned", orphaned.get());
+        stats.put("refused", refused.get());
+        return stats;
+    }
+}
@@ -0,0 +1,173 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fi.iki.elonen.NanoHTTPD;
+import fi.iki.elonen.NanoHTTPD.Response.IStatus;
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+
+/*
+ * files served from disk by the native part, without the universal part, registered with "serve_static"
+ *
+ * a directory is mounted under a path prefix, a single file (e.g. a blob stored by the native part) under its exact path.
+ * GET and HEAD only, paths that are served by the universal part take precedence. responses carry an ETag
+ * (length and modification time) and support If-None-Match, If-Range and a single byte Range,
+ * so interrupted downloads can be resumed. both backends send what serve() decides
+ * */
+class StaticFiles {
+    private final ConcurrentHashMap<String, Mount> mounts = new ConcurrentHashMap<>();
+
+    private static class Mount {
+        final File target;      // canonical
+        final boolean cors;
+        final long maxAge;      // seconds for Cache-Control, -1 for none
+
+        Mount(File target, boolean cors, long maxAge) {
+            this.target = target;
+            this.cors = cors;
+            this.maxAge = maxAge;
+        }
+    }
+
+    // the response to a request for a static file, file is null if there is no body
+    static class Reply {
+        final IStatus status;
+        final String mimeType;
+        final File file;
+        final long offset;
+        final long length;
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        Reply(IStatus status, String mimeType, File file, long offset, long length) {
+            this.status = status;
+            this.mimeType = mimeType;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        Reply(IStatus status) {
+            this(status, "text/plain", null, 0, 0);
+        }
+    }
+
+    // replaces a mount with the same path
+    void add(String path, File target, boolean cors, long maxAge) throws IOException {
+        mounts.put(normalize(path), new Mount(target.getCanonicalFile(), cors, maxAge));
+    }
+
+    boolean remove(String path) {
+        return mounts.remove(normalize(path)) != null;
+    }
+
+    // "/media/" and "/media" are the same mount
+    private static String normalize(String path) {
+        if (!path.startsWith("/"))
+            path = "/" + path;
+        while (path.length() > 1 && path.endsWith("/"))
+            path = path.substring(0, path.length() - 1);
+        return path;
+    }
+
+    /*
+     * null if the uri (decoded, without the query) is not below a mount.
+     * headers: the request headers, names in lower case
+     * */
+    Reply serve(String method, String uri, Map<String, String> headers) throws IOException {
+        if (mounts.isEmpty())
+            return null;
+        // the longest mounted prefix
+        String prefix = normalize(uri);
+        Mount mount;
+        while ((mount = mounts.get(prefix)) == null) {
+            if (prefix.equals("/"))
+                return null;
+            int slash = prefix.lastIndexOf('/');
+            prefix = slash == 0 ? "/" : prefix.substring(0, slash);
+        }
+        if (!method.equals("GET") && !method.equals("HEAD"))
+            return new Reply(Status.METHOD_NOT_ALLOWED);
+
+        String rest = prefix.equals("/") ? uri : uri.substring(prefix.length());
+        File file = rest.isEmpty() || rest.equals("/") ? mount.target : new File(mount.target, rest).getCanonicalFile();
+        if (file != mount.target && !file.getPath().startsWith(mount.target.getPath() + File.separator) || !file.isFile())
+            return new Reply(Status.NOT_FOUND);
+
+        long length = file.length();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(file.lastModified()) + "\"";
+        String mimeType = NanoHTTPD.getMimeTypeForFile(file.getName());
+        Reply reply;
+        if (matches(headers.get("if-none-match"), etag)) {
+            reply = new Reply(Status.NOT_MODIFIED, mimeType, null, 0, 0);
+        } else {
+            String range = headers.get("range");
+            String ifRange = headers.get("if-range");
+            long[] bounds = range == null || ifRange != null && !ifRange.equals(etag) ? null : parseRange(range, length);
+            if (bounds == null) {
+                reply = new Reply(Status.OK, mimeType, file, 0, length);
+            } else if (bounds.length == 0) {
+                reply = new Reply(Status.RANGE_NOT_SATISFIABLE);
+                reply.headers.put("Content-Range", "bytes */" + length);
+            } else {
+                reply = new Reply(Status.PARTIAL_CONTENT, mimeType, file, bounds[0], bounds[1] - bounds[0] + 1);
+                reply.headers.put("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            }
+        }
+        reply.headers.put("ETag", etag);
+        reply.headers.put("Accept-Ranges", "bytes");
+        if (mount.maxAge >= 0)
+            reply.headers.put("Cache-Control", "max-age=" + mount.maxAge);
+        if (mount.cors)
+            reply.headers.put("Access-Control-Allow-Origin", "*");
+        return reply;
+    }
+
+    // If-None-Match: "*" or a list of (weak) ETags
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * the first and last byte of "bytes=first-last", "bytes=first-" or "bytes=-suffixLength",
+     * an empty array if the range is not satisfiable. null to send the whole file:
+     * the header is invalid or asks for several ranges, which are not supported
+     * */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0)
+            return null;
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0)
+                    return new long[0];
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start < 0 || last.length() > 0 && Long.parseLong(last) < start)
+                return null;
+            if (start >= length)
+                return new long[0];
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * the uploaded files of a client request, so an upload never has to fit into the heap
+ *
+ * request bodies larger than inlineBodySize and the files of multipart requests are passed to the universal part
+ * in "files" as {name, filename, contentType, size, handle}, instead of inline in "body".
+ * the universal part reads a file with the "read_upload" task, large files are sent in chunks (see ChunkedTransfer).
+ * the handles are valid until the client request has been answered, then spooled files are deleted
+ * */
+class Uploads {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ConcurrentHashMap<String, File> handles = new ConcurrentHashMap<>();
+    static volatile File directory = new File(System.getProperty("java.io.tmpdir"), "uploads");
+
+    private final JSONArray files = new JSONArray();
+    private final List<String> ownHandles = new ArrayList<>();
+    private final List<File> spooled = new ArrayList<>();
+
+    // null if the handle is unknown or its client request has been answered
+    static File get(String handle) {
+        return handles.get(handle);
+    }
+
+    // remove files left over from a previous run
+    static void clearDirectory() {
+        File[] leftovers = directory.listFiles();
+        if (leftovers == null)
+            return;
+        for (File file : leftovers)
+            file.delete();
+    }
+
+    // an empty file of the upload directory, deleted with the other spooled files
+    File newFile() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("can not create " + directory);
+        File file = File.createTempFile("upload", null, directory);
+        spooled.add(file);
+        return file;
+    }
+
+    // stream length bytes of the body into a file of the upload directory
+    void spool(String name, String contentType, InputStream in, long length) throws IOException, JSONException {
+        File file = newFile();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+        try (OutputStream out = new FileOutputStream(file)) {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0)
+                    throw new IOException("the request body ended after " + (length - remaining) + " of " + length + " bytes");
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        add(name, null, contentType, file);
+    }
+
+    // a file that already exists, e.g. a multipart file stored by NanoHTTPD
+    void add(String name, String filename, String contentType, File file) throws JSONException {
+        String handle = UUID.randomUUID().toString();
+        handles.put(handle, file);
+        ownHandles.add(handle);
+
+        JSONObject entry = new JSONObject();
+        entry.put("name", name);
+        entry.put("filename", filename);
+        entry.put("contentType", contentType);
+        entry.put("size", file.length());
+        entry.put("handle", handle);
+        files.put(entry);
+    }
+
+    JSONArray toJSON() {
+        return files;
+    }
+
+    // the client request has been answered
+    void release() {
+        for (String handle : ownHandles)
+            handles.remove(handle);
+        for (File file : spooled)
+            file.delete();
+    }
+}
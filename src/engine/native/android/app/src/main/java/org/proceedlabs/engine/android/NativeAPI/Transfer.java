@@ -0,0 +1,25 @@
+package org.proceedlabs.engine.android.NativeAPI;
+
+import org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask;
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.IPC.ChunkedTransfer;
+import org.proceedlabs.engine.android.processor.IPCHandler;
+
+import org.json.JSONException;
+
+/*
+ * flow control for chunked responses, sent by the androidIPC class itself and not by the engine
+ * acknowledgements are not answered
+ * */
+public class Transfer extends IPCTask {
+
+    public Transfer() {
+        answersRequests = false;
+    }
+
+    @Override
+    @IPCHandler("chunk_ack")
+    public void handle(NativeRequest req) throws JSONException {
+        ChunkedTransfer.acknowledge(req.getArgs().getString(0));
+    }
+}
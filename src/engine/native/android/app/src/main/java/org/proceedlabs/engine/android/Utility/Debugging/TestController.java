@@ -168,5 +168,5 @@ public class TestController {
     }
 
 
-    public enum TaskNames {read_config, write_config, read_device_info, read, write, console_log, publish, discover, unpublish, serve, respond, setport, unsetport, performcapabilitie, allcapabilities, writenative, readnative, lsnative, writevirtual, readvirtual, lsvirtual}               //serve, respond, read, write, discover, capability
+    public enum TaskNames {read_config, write_config, read_device_info, read, write, console_log, publish, discover, unpublish, serve, respond, setport, unsetport, performcapabilitie, allcapabilities, writenative, readnative, lsnative, writevirtual, readvirtual, lsvirtual, ipc_metrics, cancel}               //serve, respond, read, write, discover, capability
 }
@@ -0,0 +1,92 @@
+package org.proceedlabs.engine.android.Utility;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * serves the universal engine bundle from a web-like https URL instead of file:///android_asset
+ *
+ * the bundle is always read from the assets by intercept(), the HTTP cache of the WebView stays off (LOAD_NO_CACHE).
+ * the URL contains the install time of the app, so an update of the app changes the URL of the bundle.
+ * measure the cold start with benchmark/cold-start.sh on a device before relying on this URL for launch times
+ *
+ * the document itself stays file:///android_asset/index.html, the universal part relies on the
+ * file URL access settings (e.g. requests to other engines without CORS)
+ * */
+public class EngineBundleLoader {
+    public static final String HOST = "appassets.androidplatform.net";     // reserved for local content, never resolved
+    private static final String BUNDLE = "universal.js";
+    private final Context context;
+    private final String version;
+
+    public EngineBundleLoader(Context context) {
+        this.context = context;
+        String version;
+        try {
+            version = Long.toString(context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            version = "dev";
+        }
+        this.version = version;
+    }
+
+    public String getBundleURL() {
+        return "https://" + HOST + "/" + version + "/" + BUNDLE;
+    }
+
+    // index.html with the bundle pointing to its cacheable URL
+    public String getIndexHTML() throws IOException {
+        String html = new String(readAsset("index.html"), "UTF-8");
+        return html.replace("src=\"" + BUNDLE + "\"", "src=\"" + getBundleURL() + "\"");
+    }
+
+    // null for requests that are not served from the assets
+    public WebResourceResponse intercept(Uri url) {
+        if (!HOST.equals(url.getHost()) || url.getPathSegments().size() < 2)
+            return null;
+        // the first segment is the version
+        String asset = url.getPath().substring(url.getPathSegments().get(0).length() + 2);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        try {
+            InputStream in = context.getAssets().open(asset);
+            headers.put("Cache-Control", "max-age=31536000, immutable");
+            return new WebResourceResponse(getMimeType(asset), "UTF-8", 200, "OK", headers, in);
+        } catch (IOException e) {
+            Log.e("EngineBundleLoader", "asset not found: " + asset);
+            return new WebResourceResponse("text/plain", "UTF-8", 404, "Not Found", headers, null);
+        }
+    }
+
+    private byte[] readAsset(String name) throws IOException {
+        try (InputStream in = context.getAssets().open(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+    private static String getMimeType(String asset) {
+        if (asset.endsWith(".js"))
+            return "application/javascript";
+        if (asset.endsWith(".json"))
+            return "application/json";
+        if (asset.endsWith(".html"))
+            return "text/html";
+        if (asset.endsWith(".css"))
+            return "text/css";
+        return "application/octet-stream";
+    }
+}
@@ -31,6 +31,18 @@ public class FileIO {
         return sb.toString();
     }
 
+    public static byte[] readBytes(File file) throws IOException {
+        byte[] buffer = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            int read;
+            while (offset < buffer.length && (read = in.read(buffer, offset, buffer.length - offset)) > 0) {
+                offset += read;
+            }
+        }
+        return buffer;
+    }
+
     public static File createFile(String folder, String fileName, Context c) {
         File root = new File(c.getFilesDir(), folder);
         //File root = new File(Environment.getDataDirectory(), folder);
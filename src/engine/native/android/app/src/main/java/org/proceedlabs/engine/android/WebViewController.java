@@ -1,34 +1,52 @@
 package org.proceedlabs.engine.android;
 
+import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.webkit.ConsoleMessage;
 import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebChromeClient;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
+import android.webkit.WebViewClient;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 
 import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.FormatAPI.NativeResponse;
+import org.proceedlabs.engine.android.IPC.BinaryTransport;
+import org.proceedlabs.engine.android.IPC.EvaluateJavascriptTransport;
+import org.proceedlabs.engine.android.IPC.IPCTransport;
+import org.proceedlabs.engine.android.IPC.MessagePortTransport;
+import org.proceedlabs.engine.android.IPC.ResponseScheduler;
+import org.proceedlabs.engine.android.IPC.StartupMetrics;
+import org.proceedlabs.engine.android.Utility.EngineBundleLoader;
 import org.proceedlabs.engine.android.Utility.Debugging.TestController;
 
 import org.json.JSONException;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.proceedlabs.engine.android.MainActivity.appHasFocus;
 
 public class WebViewController {
     private static WebView wvInstance;
+    private static ResponseScheduler responseScheduler;
+    private static IPCTransport stringTransport;
+    private static MessagePortTransport portTransport;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
     private MainActivity instance;
     public FrameLayout ll;
-    private ThreadPoolExecutor executor;
+    private final AtomicLong bridgeCrossings = new AtomicLong();
+    private final AtomicLong bridgedMessages = new AtomicLong();
 
 
     public WebViewController(MainActivity main) {
@@ -39,7 +57,6 @@ public class WebViewController {
 
     private void initWebView() {
         if (wvInstance == null) {
-            executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(8);
             wvInstance = new WebView(instance) {
                 // keep WebView Focused and Active, even if in Background
                 // https://developers.google.com/web/updates/2018/07/page-lifecycle-api
@@ -67,15 +84,41 @@ public class WebViewController {
                         super.onFocusChanged(true, direction, previouslyFocusedRect);
                 }
             };
+            stringTransport = new EvaluateJavascriptTransport(wvInstance);
+            responseScheduler = new ResponseScheduler(stringTransport);
             wvInstance.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.MATCH_PARENT));
 
+            // the engine bundle is intercepted and read from the assets, so the HTTP cache stays off for all other requests
+            EngineBundleLoader bundleLoader = new EngineBundleLoader(instance);
             wvInstance.getSettings().setCacheMode(WebSettings.LOAD_NO_CACHE);
             wvInstance.getSettings().setJavaScriptEnabled(true);
             wvInstance.getSettings().setDomStorageEnabled(true);
             wvInstance.getSettings().setAllowFileAccess(true);
             wvInstance.getSettings().setAllowContentAccess(true);
             wvInstance.setWebContentsDebuggingEnabled(true);
-            //wvInstance.setWebViewClient(new WebViewClient());
+            wvInstance.setWebViewClient(new WebViewClient() {
+                @Override
+                public void onPageStarted(WebView view, String url, Bitmap favicon) {
+                    StartupMetrics.mark(StartupMetrics.Milestone.pageStarted);
+                    closeMessagePort();
+                    //free the resources held for requests of the previous page
+                    instance.ipcController.cancelAll("the universal part has been reloaded");
+                    super.onPageStarted(view, url, favicon);
+                }
+
+                @Override
+                public void onPageFinished(WebView view, String url) {
+                    StartupMetrics.mark(StartupMetrics.Milestone.pageFinished);
+                    openMessagePort();
+                    super.onPageFinished(view, url);
+                }
+
+                @Override
+                public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                    WebResourceResponse response = bundleLoader.intercept(request.getUrl());
+                    return response != null ? response : super.shouldInterceptRequest(view, request);
+                }
+            });
             wvInstance.getSettings().setAllowFileAccessFromFileURLs(true);
             wvInstance.getSettings().setAllowUniversalAccessFromFileURLs(true);
             wvInstance.getSettings().setPluginState(WebSettings.PluginState.ON);
@@ -97,10 +140,8 @@ public class WebViewController {
 
             wvInstance.addJavascriptInterface(this, "Android");
 
-            Map<String, String> header = new HashMap<>();
-            header.put("Access-Control-Allow-Origin", "*");      //todo: check in necessearx
-
-            wvInstance.loadUrl("file:///android_asset/index.html", header);
+            loadEngine(bundleLoader);
+            StartupMetrics.mark(StartupMetrics.Milestone.webViewCreated);
         }
 
         // display the WebView
@@ -109,24 +150,110 @@ public class WebViewController {
             ll.addView(wvInstance);
     }
 
+    // index.html keeps its file:// origin, only the bundle is loaded from its cacheable URL
+    private void loadEngine(EngineBundleLoader bundleLoader) {
+        try {
+            wvInstance.loadDataWithBaseURL("file:///android_asset/index.html", bundleLoader.getIndexHTML(), "text/html", "UTF-8", "file:///android_asset/index.html");
+        } catch (IOException e) {
+            Log.e("WebViewController", "index.html could not be read, loading it uncached", e);
+            wvInstance.loadUrl("file:///android_asset/index.html");
+        }
+    }
+
+    // offer a WebMessagePort to the page, responses switch to it once the universal part answers the handshake
+    private void openMessagePort() {
+        if (!MessagePortTransport.isSupported())
+            return;
+        closeMessagePort();
+        MessagePortTransport transport = MessagePortTransport.open(wvInstance, this::receiveFromUniversal,
+                () -> mainHandler.post(() -> {
+                    if (portTransport != null && portTransport.isReady())
+                        responseScheduler.setTransport(portTransport);
+                }));
+        portTransport = transport;
+    }
+
+    private void closeMessagePort() {
+        responseScheduler.setTransport(stringTransport);
+        if (portTransport != null) {
+            portTransport.close();
+            portTransport = null;
+        }
+    }
+
     public void postToUniversal(String jsCode) {
-        new Handler(Looper.getMainLooper()).post(() -> {
-            wvInstance.evaluateJavascript(jsCode, null);
-        });
+        mainHandler.post(() -> wvInstance.evaluateJavascript(jsCode, null));
+    }
+
+    // responses are coalesced and delivered as one ipcReceive batch per frame
+    public void postResponse(String message) {
+        responseScheduler.enqueue(message);
+    }
+
+    // header is a serialized [taskID, meta, field] array, only call if supportsBinary() is true
+    public void postBinary(String header, byte[] data, int offset, int length) {
+        responseScheduler.enqueueBinary(header, data, offset, length);
+    }
+
+    public boolean supportsBinary() {
+        return responseScheduler.getTransport() instanceof BinaryTransport;
     }
 
-    // IPC Connection to WebView
+    public ResponseScheduler getResponseScheduler() {
+        return responseScheduler;
+    }
+
+    // IPC Connection to WebView, accepts a single message or a frame of messages
     @JavascriptInterface
     public void postToNative(String message) {
+        receiveFromUniversal(message);
+    }
+
+    // messages arrive through the JavascriptInterface or the WebMessagePort
+    private void receiveFromUniversal(String message) {
+        StartupMetrics.mark(StartupMetrics.Milestone.firstRequest);
+        bridgeCrossings.incrementAndGet();
         Runnable processIPC = () -> {
             try {
-                instance.ipcController.receiveIPC(new NativeRequest(message, instance));
+                if (NativeRequest.isFrame(message)) {
+                    List<NativeRequest> requests = NativeRequest.fromFrame(message, instance);
+                    bridgedMessages.addAndGet(requests.size());
+                    instance.ipcController.receiveIPC(requests);
+                } else {
+                    bridgedMessages.incrementAndGet();
+                    instance.ipcController.receiveIPC(new NativeRequest(message, instance));
+                }
             } catch (JSONException e) {
                 Log.i("IPC format Error", message);
                 postToUniversal("IPC syntax error: " + message);
             }
         };
         //Process in Thread-Pool
-        executor.execute(processIPC);
+        try {
+            instance.ipcController.executors.receive(processIPC);
+        } catch (RejectedExecutionException e) {
+            rejectFromUniversal(message);
+        }
+    }
+
+    // the dispatch queue is full, answer every message of the frame with an error
+    private void rejectFromUniversal(String message) {
+        try {
+            List<NativeRequest> requests = NativeRequest.isFrame(message) ? NativeRequest.fromFrame(message, instance) : Collections.singletonList(new NativeRequest(message, instance));
+            for (NativeRequest req : requests) {
+                new NativeResponse(req).sendError("The native part is overloaded, the IPC dispatch queue is full");
+            }
+        } catch (JSONException e) {
+            Log.i("IPC format Error", message);
+        }
+    }
+
+    // number of universal->native JNI calls, compare with getBridgedMessages() to see the effect of batching
+    public long getBridgeCrossings() {
+        return bridgeCrossings.get();
+    }
+
+    public long getBridgedMessages() {
+        return bridgedMessages.get();
     }
 }
@@ -0,0 +1,71 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonScannerTest {
+    @Test
+    public void acceptsValidJSON() throws JSONException {
+        String[] valid = {
+                "{}", "[]", "0", "-0.5e+10", "true", "null", "\"\"",
+                " {\"a\": [1, 2.5, -3e2, true, false, null], \"b\": {\"c\": \"d\"}} ",
+                "{\"a\":\"\\u00e4\\uABCD\\\"\\\\\\/\\b\\f\\n\\r\\t\"}",
+        };
+        for (String json : valid)
+            assertEquals(json, RawJSON.of(json).toString());
+    }
+
+    @Test
+    public void rejectsInvalidJSON() {
+        String[] invalid = {
+                "", "{", "[1,]", "{\"a\":}", "{\"a\" 1}", "01", "1.", "1e", "-", "tru", "nul",
+                "\"unterminated", "\"\\x\"", "\"\\u12\"", "\"\\u12g4\"", "\"a\nb\"", "{} {}", "[1] x",
+        };
+        for (String json : invalid)
+            assertInvalid(json);
+    }
+
+    // Character.digit accepts the fullwidth digits, JSON only the ASCII hex digits
+    @Test
+    public void rejectsNonAsciiHexDigitsInUnicodeEscapes() {
+        assertInvalid("{\"a\":\"\\u\uff10\uff10\uff10\uff10\"}");
+        assertInvalid("{\"a\":\"\\u\u0660\u0660\u0660\u0660\"}");
+    }
+
+    @Test
+    public void rejectsTooDeepNesting() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            json.append('[');
+        for (int i = 0; i < 1000; i++)
+            json.append(']');
+        assertInvalid(json.toString());
+    }
+
+    @Test
+    public void escapesLineSeparators() throws JSONException {
+        assertEquals("\"a\\u2028b\\u2029\"", RawJSON.of("\"a\u2028b\u2029\"").toString());
+    }
+
+    @Test
+    public void findsTheBoundsOfValues() throws JSONException {
+        JsonScanner scanner = new JsonScanner(" [1, \"x\"] true");
+        scanner.skipValue();
+        assertEquals(9, scanner.position());
+        scanner.skipValue();
+        assertTrue(scanner.atEnd());
+    }
+
+    private static void assertInvalid(String json) {
+        try {
+            RawJSON.of(json);
+            fail("accepted " + json);
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+    private final ResponseCache cache = new ResponseCache(10);
+    private NativeRequest route;
+
+    @Before
+    public void serve() throws JSONException {
+        route = newRoute();
+    }
+
+    private static NativeRequest newRoute() throws JSONException {
+        return new NativeRequest(new JSONArray().put("1").put("serve").put(new JSONArray().put("get").put("/c/:id").put(new JSONObject())), null);
+    }
+
+    private ResponseCache.Entry entry(String uri, String body) {
+        return new ResponseCache.Entry(route, uri, "text/plain", body.getBytes(), 60000);
+    }
+
+    private void put(String uri, String body) {
+        cache.put(key(uri), entry(uri, body), cache.getGeneration());
+    }
+
+    private static String key(String uri) {
+        return ResponseCache.key("GET", uri, Collections.emptyMap());
+    }
+
+    @Test
+    public void keysIgnoreTheOrderOfTheQuery() {
+        Map<String, List<String>> ab = new HashMap<>();
+        ab.put("a", Collections.singletonList("1"));
+        ab.put("b", Arrays.asList("2", "3"));
+        Map<String, List<String>> ba = new HashMap<>();
+        ba.put("b", Arrays.asList("2", "3"));
+        ba.put("a", Collections.singletonList("1"));
+
+        assertEquals(ResponseCache.key("GET", "/c", ab), ResponseCache.key("GET", "/c", ba));
+        assertEquals("GET /c", key("/c"));
+    }
+
+    @Test
+    public void returnsFreshEntriesOfTheSameRoute() throws JSONException {
+        put("/c/1", "one");
+        assertEquals("one", new String(cache.get(key("/c/1"), route).body));
+        // the route has been replaced
+        assertNull(cache.get(key("/c/1"), newRoute()));
+        assertNull(cache.get(key("/c/1"), route));
+    }
+
+    @Test
+    public void dropsExpiredEntries() throws JSONException {
+        cache.put(key("/c/1"), new ResponseCache.Entry(route, "/c/1", "text/plain", new byte[1], 0), cache.getGeneration());
+        assertNull(cache.get(key("/c/1"), route));
+        assertEquals(0, cache.getStats().getInt("entries"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntries() throws JSONException {
+        put("/c/1", "1111");
+        put("/c/2", "2222");
+        cache.get(key("/c/1"), route);
+        put("/c/3", "3333");
+
+        assertNotNull(cache.get(key("/c/1"), route));
+        assertNull(cache.get(key("/c/2"), route));
+        assertNotNull(cache.get(key("/c/3"), route));
+        JSONObject stats = cache.getStats();
+        assertEquals(8, stats.getLong("bytes"));
+        assertEquals(1, stats.getLong("evictions"));
+
+        cache.setMaxBytes(4);
+        assertNull(cache.get(key("/c/1"), route));
+        assertNotNull(cache.get(key("/c/3"), route));
+    }
+
+    @Test
+    public void skipsEntriesLargerThanTheCache() throws JSONException {
+        put("/c/1", "one");
+        put("/c/2", "0123456789a");
+        assertNull(cache.get(key("/c/2"), route));
+        assertNotNull(cache.get(key("/c/1"), route));
+        assertEquals(3, cache.getStats().getLong("bytes"));
+    }
+
+    @Test
+    public void invalidatesAPathAndThePathsBelowIt() throws JSONException {
+        put("/c", "c");
+        put("/c/1", "1");
+        put("/cd", "cd");
+
+        assertEquals(2, cache.invalidate("/c"));
+        assertNull(cache.get(key("/c/1"), route));
+        assertNotNull(cache.get(key("/cd"), route));
+        assertEquals(1, cache.invalidate("/"));
+        assertEquals(0, cache.getStats().getLong("bytes"));
+    }
+
+    @Test
+    public void invalidatesTheEntriesOfARoute() throws JSONException {
+        put("/c/1", "1");
+        NativeRequest other = newRoute();
+        cache.put(key("/d"), new ResponseCache.Entry(other, "/d", "text/plain", new byte[1], 60000), cache.getGeneration());
+
+        cache.invalidate(route);
+        assertNull(cache.get(key("/c/1"), route));
+        assertNotNull(cache.get(key("/d"), other));
+    }
+
+    // a GET that was sent before the invalidation may answer with the state before the change
+    @Test
+    public void skipsAnswersThatRacedWithAnInvalidation() {
+        long before = cache.getGeneration();
+        cache.invalidate("/c/1");
+        cache.put(key("/c/1"), entry("/c/1", "old"), before);
+        assertNull(cache.get(key("/c/1"), route));
+
+        before = cache.getGeneration();
+        cache.invalidate("/c");
+        cache.put(key("/c/1"), entry("/c/1", "old"), before);
+        assertNull(cache.get(key("/c/1"), route));
+
+        // other paths and GETs sent after the invalidation are kept
+        before = cache.getGeneration();
+        cache.invalidate("/d");
+        cache.put(key("/c/1"), entry("/c/1", "new"), before);
+        assertNotNull(cache.get(key("/c/1"), route));
+        put("/d", "d");
+        assertNotNull(cache.get(key("/d"), route));
+    }
+}
@@ -0,0 +1,133 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+import fi.iki.elonen.NanoHTTPD.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RouterTest {
+    private final Router router = new Router();
+
+    private LinkedHashMap<Method, NativeRequest> add(String path) {
+        LinkedHashMap<Method, NativeRequest> methods = new LinkedHashMap<>();
+        router.add(path, methods);
+        return methods;
+    }
+
+    @Test
+    public void matchesStaticPaths() {
+        LinkedHashMap<Method, NativeRequest> root = add("/");
+        LinkedHashMap<Method, NativeRequest> status = add("/status");
+        LinkedHashMap<Method, NativeRequest> process = add("/process/list");
+
+        assertSame(root, router.match("/").methods);
+        assertSame(status, router.match("/status").methods);
+        assertSame(process, router.match("/process/list").methods);
+        assertNull(router.match("/process"));
+        assertNull(router.match("/process/list/x"));
+        assertNull(router.match("/unknown"));
+    }
+
+    @Test
+    public void ignoresTrailingSlash() {
+        LinkedHashMap<Method, NativeRequest> status = add("/status");
+        assertSame(status, router.match("/status/").methods);
+    }
+
+    @Test
+    public void capturesParameters() throws JSONException {
+        LinkedHashMap<Method, NativeRequest> methods = add("/process/:id/instance/:instanceID");
+        Router.Match match = router.match("/process/p1/instance/i2");
+
+        assertSame(methods, match.methods);
+        assertEquals("p1", match.getParams().getString("id"));
+        assertEquals("i2", match.getParams().getString("instanceID"));
+        assertNull(router.match("/process/p1/instance"));
+
+        add("/status");
+        assertEquals(0, router.match("/status").getParams().length());
+    }
+
+    @Test
+    public void firstRegisteredRouteWins() throws JSONException {
+        LinkedHashMap<Method, NativeRequest> param = add("/a/:id");
+        LinkedHashMap<Method, NativeRequest> fixed = add("/a/b");
+        assertSame(param, router.match("/a/b").methods);
+        assertEquals("b", router.match("/a/b").getParams().getString("id"));
+
+        Router reversed = new Router();
+        LinkedHashMap<Method, NativeRequest> fixedFirst = new LinkedHashMap<>();
+        reversed.add("/a/b", fixedFirst);
+        reversed.add("/a/:id", new LinkedHashMap<>());
+        assertSame(fixedFirst, reversed.match("/a/b").methods);
+        assertEquals("c", reversed.match("/a/c").getParams().getString("id"));
+    }
+
+    // the search does not stop at the first branch that matches a segment
+    @Test
+    public void firstRegisteredRouteWinsAcrossBranches() throws JSONException {
+        LinkedHashMap<Method, NativeRequest> param = add("/a/:id/x");
+        add("/a/b/:name");
+        Router.Match match = router.match("/a/b/x");
+
+        assertSame(param, match.methods);
+        assertEquals("b", match.getParams().getString("id"));
+        assertEquals(1, match.getParams().length());
+    }
+
+    // parameters with different names are separate routes at the same depth
+    @Test
+    public void keepsRoutesWithDifferentParameterNames() throws JSONException {
+        LinkedHashMap<Method, NativeRequest> id = add("/a/:id");
+        LinkedHashMap<Method, NativeRequest> name = add("/a/:name");
+        Router.Match match = router.match("/a/x");
+        assertSame(id, match.methods);
+        assertEquals("x", match.getParams().getString("id"));
+        assertEquals(1, match.getParams().length());
+
+        router.remove("/a/:name");
+        assertSame(id, router.match("/a/x").methods);
+
+        name = add("/a/:name");
+        router.remove("/a/:id");
+        match = router.match("/a/x");
+        assertSame(name, match.methods);
+        assertEquals("x", match.getParams().getString("name"));
+    }
+
+    // "/a" and "/a/" have the same segments, removing one keeps the other
+    @Test
+    public void keepsPathsEndingAtTheSameNode() {
+        LinkedHashMap<Method, NativeRequest> first = add("/a");
+        LinkedHashMap<Method, NativeRequest> second = add("/a/");
+        assertSame(first, router.match("/a").methods);
+
+        router.remove("/a");
+        assertSame(second, router.match("/a").methods);
+        router.remove("/a/");
+        assertNull(router.match("/a"));
+    }
+
+    @Test
+    public void replacesAndRemovesRoutes() {
+        add("/a/:id");
+        LinkedHashMap<Method, NativeRequest> nested = add("/a/:id/x");
+        LinkedHashMap<Method, NativeRequest> replaced = add("/a/:id");
+        assertSame(replaced, router.match("/a/1").methods);
+
+        router.remove("/a/:id");
+        assertNull(router.match("/a/1"));
+        assertSame(nested, router.match("/a/1/x").methods);
+
+        router.remove("/a/:id/x");
+        assertNull(router.match("/a/1/x"));
+    }
+}
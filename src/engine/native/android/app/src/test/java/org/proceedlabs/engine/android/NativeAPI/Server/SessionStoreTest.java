@@ -0,0 +1,90 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SessionStoreTest {
+    private final SessionStore store = new SessionStore(2);
+
+    private static NativeRequest serveRequest(String path) throws JSONException {
+        return new NativeRequest(new JSONArray().put("1").put("serve").put(new JSONArray().put("get").put(path).put(new JSONObject())), null);
+    }
+
+    private static Answer answer(String sessionID) throws JSONException {
+        JSONArray args = new JSONArray().put("ok").put(sessionID).put(200).put("text/plain");
+        return Answer.of(new NativeRequest(new JSONArray().put("2").put("respond").put(args), null));
+    }
+
+    @Test
+    public void answersAWaitingSession() throws Exception {
+        Session session = store.open(serveRequest("/a"), 1000);
+        Answer answer = answer(session.id);
+
+        assertTrue(store.complete(session.id, answer));
+        assertSame(answer, session.await());
+        store.close(session, answer);
+        assertEquals(0, store.size());
+        assertEquals(0, store.getStats().getInt("expired"));
+    }
+
+    @Test
+    public void refusesSessionsBeyondItsCapacity() throws Exception {
+        Session first = store.open(serveRequest("/a"), 1000);
+        assertNotNull(store.open(serveRequest("/a"), 1000));
+        assertNull(store.open(serveRequest("/a"), 1000));
+        assertEquals(1, store.getStats().getInt("refused"));
+
+        store.close(first, null);
+        assertNotNull(store.open(serveRequest("/a"), 1000));
+    }
+
+    @Test
+    public void expiresSessionsAfterTheirTTL() throws Exception {
+        Session session = store.open(serveRequest("/a"), 10);
+
+        assertNull(session.await());
+        assertFalse(store.complete(session.id, answer(session.id)));
+        store.close(session, null);
+        JSONObject stats = store.getStats();
+        assertEquals(1, stats.getInt("expired"));
+        assertEquals(1, stats.getInt("orphaned"));
+        assertFalse(store.isOpen(session.id));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void rejectsAnswersToClosedOrUnknownSessions() throws Exception {
+        Session session = store.open(serveRequest("/a"), 1000);
+        store.close(session, null);
+
+        assertFalse(store.complete(session.id, answer(session.id)));
+        assertFalse(store.complete("unknown", answer("unknown")));
+        assertEquals(2, store.getStats().getInt("orphaned"));
+    }
+
+    // an aborted session ends without an answer, but it has not expired
+    @Test
+    public void abortsTheSessionsOfARoute() throws Exception {
+        NativeRequest aborted = serveRequest("/a");
+        Session session = store.open(aborted, 1000);
+        Session other = store.open(serveRequest("/b"), 1000);
+
+        store.abort(aborted);
+        assertNull(session.await());
+        assertTrue(session.isAborted());
+        assertFalse(other.isAborted());
+        store.close(session, null);
+        assertEquals(0, store.getStats().getInt("expired"));
+    }
+}
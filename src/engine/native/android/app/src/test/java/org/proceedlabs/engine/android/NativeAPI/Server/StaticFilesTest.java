@@ -0,0 +1,139 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD.Response.Status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StaticFilesTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final StaticFiles staticFiles = new StaticFiles();
+    private File media;
+    private String etag;
+
+    @Before
+    public void mount() throws IOException {
+        media = folder.newFolder("media");
+        File file = write(new File(media, "ten.txt"), "0123456789");
+        write(folder.newFile("secret.txt"), "secret");
+        staticFiles.add("/media/", media, true, 60);
+        etag = staticFiles.serve("GET", "/media/ten.txt", new HashMap<>()).headers.get("ETag");
+    }
+
+    private static File write(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private StaticFiles.Reply get(String uri, String... headers) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2)
+            map.put(headers[i], headers[i + 1]);
+        return staticFiles.serve("GET", uri, map);
+    }
+
+    private static void assertRange(StaticFiles.Reply reply, long offset, long length) {
+        assertEquals(Status.PARTIAL_CONTENT, reply.status);
+        assertEquals(offset, reply.offset);
+        assertEquals(length, reply.length);
+        assertEquals("bytes " + offset + "-" + (offset + length - 1) + "/10", reply.headers.get("Content-Range"));
+    }
+
+    private static void assertWholeFile(StaticFiles.Reply reply) {
+        assertEquals(Status.OK, reply.status);
+        assertEquals(0, reply.offset);
+        assertEquals(10, reply.length);
+        assertNull(reply.headers.get("Content-Range"));
+    }
+
+    @Test
+    public void servesFilesBelowAMount() throws IOException {
+        StaticFiles.Reply reply = get("/media/ten.txt");
+        assertWholeFile(reply);
+        assertEquals(new File(media, "ten.txt").getCanonicalFile(), reply.file);
+        assertEquals("text/plain", reply.mimeType);
+        assertEquals("bytes", reply.headers.get("Accept-Ranges"));
+        assertEquals("max-age=60", reply.headers.get("Cache-Control"));
+        assertEquals("*", reply.headers.get("Access-Control-Allow-Origin"));
+    }
+
+    @Test
+    public void refusesPathsOutsideOfTheMount() throws IOException {
+        assertNull(get("/other/ten.txt"));
+        assertEquals(Status.NOT_FOUND, get("/media/../secret.txt").status);
+        assertEquals(Status.NOT_FOUND, get("/media/missing.txt").status);
+        assertEquals(Status.NOT_FOUND, get("/media").status);
+        assertEquals(Status.METHOD_NOT_ALLOWED, staticFiles.serve("POST", "/media/ten.txt", new HashMap<>()).status);
+    }
+
+    @Test
+    public void prefersTheLongestMount() throws IOException {
+        File blob = write(folder.newFile("blob.bin"), "blob");
+        staticFiles.add("/media/blob", blob, false, -1);
+
+        StaticFiles.Reply reply = get("/media/blob");
+        assertEquals(blob.getCanonicalFile(), reply.file);
+        assertNull(reply.headers.get("Cache-Control"));
+        assertEquals(Status.OK, get("/media/ten.txt").status);
+
+        staticFiles.remove("/media/blob/");
+        assertEquals(Status.NOT_FOUND, get("/media/blob").status);
+    }
+
+    @Test
+    public void answersIfNoneMatch() throws IOException {
+        assertEquals(Status.NOT_MODIFIED, get("/media/ten.txt", "if-none-match", etag).status);
+        assertEquals(Status.NOT_MODIFIED, get("/media/ten.txt", "if-none-match", "\"x\", W/" + etag).status);
+        assertEquals(Status.NOT_MODIFIED, get("/media/ten.txt", "if-none-match", "*").status);
+        assertEquals(Status.OK, get("/media/ten.txt", "if-none-match", "\"x\"").status);
+    }
+
+    @Test
+    public void parsesSingleRanges() throws IOException {
+        assertRange(get("/media/ten.txt", "range", "bytes=2-5"), 2, 4);
+        assertRange(get("/media/ten.txt", "range", "bytes=5-"), 5, 5);
+        assertRange(get("/media/ten.txt", "range", "bytes=-3"), 7, 3);
+        assertRange(get("/media/ten.txt", "range", "bytes=-20"), 0, 10);
+        assertRange(get("/media/ten.txt", "range", "bytes=8-100"), 8, 2);
+        assertRange(get("/media/ten.txt", "range", "bytes=9-9"), 9, 1);
+    }
+
+    @Test
+    public void refusesUnsatisfiableRanges() throws IOException {
+        for (String range : new String[]{"bytes=10-", "bytes=20-30", "bytes=-0"}) {
+            StaticFiles.Reply reply = get("/media/ten.txt", "range", range);
+            assertEquals(range, Status.RANGE_NOT_SATISFIABLE, reply.status);
+            assertEquals("bytes */10", reply.headers.get("Content-Range"));
+            assertNull(reply.file);
+        }
+    }
+
+    // an invalid Range header or several ranges are ignored, the whole file is sent
+    @Test
+    public void sendsTheWholeFileForUnsupportedRanges() throws IOException {
+        for (String range : new String[]{"bytes=5-2", "bytes=0-1,3-4", "items=0-1", "bytes=a-b", "bytes=3"})
+            assertWholeFile(get("/media/ten.txt", "range", range));
+    }
+
+    @Test
+    public void honorsIfRange() throws IOException {
+        assertRange(get("/media/ten.txt", "range", "bytes=2-5", "if-range", etag), 2, 4);
+        assertWholeFile(get("/media/ten.txt", "range", "bytes=2-5", "if-range", "\"changed\""));
+    }
+}
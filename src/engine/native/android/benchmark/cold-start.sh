@@ -0,0 +1,22 @@
+#!/bin/sh
+# cold start of the engine on a connected device: process start -> first ipcReceive
+# usage: ./cold-start.sh [runs]   (install the app first, e.g. ./gradlew :app:installDebug)
+PACKAGE=org.proceedlabs.engine.android
+ACTIVITY=$PACKAGE/.MainActivity
+RUNS=${1:-10}
+
+# grant the runtime permissions once, so the permission dialog does not end up in the measurement
+for permission in CAMERA ACCESS_FINE_LOCATION RECORD_AUDIO; do
+  adb shell pm grant $PACKAGE android.permission.$permission 2>/dev/null
+done
+
+i=0
+while [ $i -lt $RUNS ]; do
+  adb shell am force-stop $PACKAGE
+  adb logcat -c
+  adb shell am start -W -n $ACTIVITY > /dev/null
+  # wait for the engine to answer its first request
+  line=$(timeout 30 adb logcat -s ColdStart:I -m 1)
+  echo "$line" | sed -n 's/.*first ipcReceive after \([0-9]*\) ms.*/\1/p'
+  i=$((i + 1))
+done | sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) exit 1; printf "runs %d  min %d ms  p50 %d ms  max %d ms\n", NR, v[1], v[int((NR + 1) / 2)], v[NR] }'
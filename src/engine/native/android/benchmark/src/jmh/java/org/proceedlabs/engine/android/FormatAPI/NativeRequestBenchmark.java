@@ -0,0 +1,79 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/*
+ * parsing of the messages of the universal part, as done for every IPC request
+ * header: what the dispatcher needs (taskID, taskName), args: the handler reads its arguments
+ * */
+@State(Scope.Benchmark)
+public class NativeRequestBenchmark {
+    @Param({"100", "4000", "64000"})
+    public int argsLength;
+
+    private String message;
+    private String frame;
+
+    @Setup
+    public void setup() throws JSONException {
+        message = createMessage("1234", argsLength);
+        JSONArray messages = new JSONArray();
+        for (int i = 0; i < 8; i++) {
+            messages.put(new JSONArray(createMessage("" + i, argsLength / 8)));
+        }
+        frame = messages.toString();
+    }
+
+    // [taskID, "write", [table, {...}]] with about length chars of args
+    static String createMessage(String taskID, int length) throws JSONException {
+        JSONObject value = new JSONObject();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < length; i++) {
+            text.append("value ").append(i).append(' ');
+        }
+        value.put("id", taskID);
+        value.put("text", text.toString());
+        value.put("count", length);
+        return new JSONArray().put(taskID).put("write").put(new JSONArray().put("processes/" + taskID).put(value)).toString();
+    }
+
+    @Benchmark
+    public String header() throws JSONException {
+        return new NativeRequest(message, null).getTaskName();
+    }
+
+    @Benchmark
+    public JSONArray args() throws JSONException {
+        return new NativeRequest(message, null).getArgs();
+    }
+
+    // a batched frame, the dispatcher only needs the headers
+    @Benchmark
+    public int frameOfEightHeaders() throws JSONException {
+        List<NativeRequest> requests = NativeRequest.fromFrame(frame, null);
+        int length = 0;
+        for (NativeRequest req : requests) {
+            length += req.getTaskName().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int frameOfEight() throws JSONException {
+        List<NativeRequest> requests = NativeRequest.fromFrame(frame, null);
+        int length = 0;
+        for (NativeRequest req : requests) {
+            length += req.getArgs().length();
+        }
+        return length;
+    }
+}
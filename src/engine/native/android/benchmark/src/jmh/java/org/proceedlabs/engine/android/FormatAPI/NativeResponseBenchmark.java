@@ -0,0 +1,51 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * building a response and serializing it to the message that is sent to the universal part
+ * */
+@State(Scope.Benchmark)
+public class NativeResponseBenchmark {
+    @Param({"4", "64"})
+    public int fields;
+
+    private NativeRequest req;
+    private String value;
+
+    @Setup
+    public void setup() throws JSONException {
+        req = new NativeRequest(NativeRequestBenchmark.createMessage("1234", 100), null);
+        value = "a text value with a \"quote\" and a \\ backslash";
+    }
+
+    @Benchmark
+    public String object() throws JSONException {
+        JSONObject obj = new JSONObject();
+        for (int i = 0; i < fields; i++) {
+            obj.put("field" + i, i % 2 == 0 ? value : i);
+        }
+        return new NativeResponse(req).put(obj).getMessage();
+    }
+
+    @Benchmark
+    public String array() {
+        JSONArray arr = new JSONArray();
+        for (int i = 0; i < fields; i++) {
+            arr.put(value);
+        }
+        return new NativeResponse(req).put(arr).getMessage();
+    }
+
+    @Benchmark
+    public String error() {
+        return new NativeResponse(req).setError("The requested Task has not been implemented oder registered!").getMessage();
+    }
+}
@@ -0,0 +1,63 @@
+package org.proceedlabs.engine.android.FormatAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * a JSON body on its way through the HTTP server, with about bodyLength chars
+ *
+ * request*   the body of a client request, written into the message to the universal part
+ *            parsed: JSONObject tree, serialized again; raw: RawJSON, syntax check only
+ * respond*   the response body of a "respond" request, read from the message of the universal part
+ *            parsed: args decoded, the body serialized again by getString(); raw: getRawArgs()
+ * */
+@State(Scope.Benchmark)
+public class RawJSONBenchmark {
+    @Param({"4000", "64000", "1000000"})
+    public int bodyLength;
+
+    private NativeRequest serveRequest;
+    private String body;
+    private String respondMessage;
+
+    @Setup
+    public void setup() throws JSONException {
+        serveRequest = new NativeRequest(new JSONArray().put("1").put("serve").put(new JSONArray().put("post").put("/process")), null);
+        JSONArray elements = new JSONArray();
+        for (int i = 0; elements.toString().length() < bodyLength; i++) {
+            elements.put(new JSONObject().put("id", "task_" + i).put("name", "Task " + i).put("duration", i * 1.5).put("done", i % 2 == 0));
+        }
+        body = new JSONObject().put("definitionId", "process_1").put("elements", elements).toString();
+        respondMessage = new JSONArray().put("2").put("respond").put(new JSONArray().put(new JSONObject(body)).put("7").put(200).put("application/json")).toString();
+    }
+
+    private JSONObject clientRequest(Object body) throws JSONException {
+        return new JSONObject().put("method", "POST").put("path", "/process").put("body", body);
+    }
+
+    @Benchmark
+    public String requestParsed() throws JSONException {
+        return new NativeResponse(serveRequest).put("7").put(clientRequest(new JSONObject(body))).getMessage();
+    }
+
+    @Benchmark
+    public String requestRaw() throws JSONException {
+        return new NativeResponse(serveRequest).put("7").put(clientRequest(RawJSON.of(body))).getMessage();
+    }
+
+    @Benchmark
+    public String respondParsed() throws JSONException {
+        return new NativeRequest(respondMessage, null).getArgs().getString(0);
+    }
+
+    @Benchmark
+    public String respondRaw() throws JSONException {
+        return new NativeRequest(respondMessage, null).getRawArgs()[0];
+    }
+}
@@ -0,0 +1,42 @@
+package org.proceedlabs.engine.android.IPC;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/*
+ * binary data (e.g. a photo) on its way to the universal part, as one message
+ *
+ * port     one char per byte, sent over the MessagePortTransport
+ * base64   Base64 inside a frame, for a transport without binary support
+ * */
+@State(Scope.Benchmark)
+public class BinaryMessageBenchmark {
+    @Param({"16384", "262144", "1048576"})
+    public int length;
+
+    private String header;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        header = "[\"1234\",{\"mimeType\":\"image/jpeg\"},\"data\"]";
+        data = new byte[length];
+        new Random(1).nextBytes(data);
+    }
+
+    @Benchmark
+    public String port() {
+        return MessagePortTransport.toBinaryMessage(header, data, 0, length);
+    }
+
+    @Benchmark
+    public String base64() throws JSONException {
+        return "[" + ResponseScheduler.toStringMessage(header, data, 0, length) + "]";
+    }
+}
@@ -0,0 +1,55 @@
+package org.proceedlabs.engine.android;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+import org.proceedlabs.engine.android.IPC.Workload;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * startup: the first IPCController of a fresh JVM, including class loading, as in the onCreate of the app
+ * dispatch: a request through receiveIPC to its handler on the CPU pool, "chunk_ack" is used as it needs no device.
+ * waits while the pool is half full, a full pool would answer with an error, which needs a WebView
+ * */
+public class IPCControllerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dispatch {
+        IPCController controller;
+        NativeRequest ack;
+
+        @Setup
+        public void setup() throws JSONException {
+            controller = new IPCController(null);
+            ack = new NativeRequest("[\"1\",\"chunk_ack\",[\"no transfer\"]]", null);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(20)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public IPCController startup() {
+        return new IPCController(null);
+    }
+
+    @Benchmark
+    public void dispatch(Dispatch state) {
+        while (state.controller.executors.get(Workload.CPU).getSaturation() > 0.5)
+            Thread.yield();
+        state.controller.receiveIPC(state.ack);
+    }
+}
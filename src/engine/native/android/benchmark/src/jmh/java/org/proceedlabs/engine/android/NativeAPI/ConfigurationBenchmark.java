@@ -0,0 +1,54 @@
+package org.proceedlabs.engine.android.NativeAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * read_config: the default configuration of the assets merged with the configuration of the user
+ * mergeConfig changes the default configuration, so it is parsed in every invocation. parse alone is the baseline
+ * */
+@State(Scope.Benchmark)
+public class ConfigurationBenchmark {
+    private String defaultConfig;
+    private JSONObject userConfig;
+
+    @Setup
+    public void setup() throws IOException, JSONException {
+        try (InputStream in = ConfigurationBenchmark.class.getResourceAsStream("/config_default.json")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            defaultConfig = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+        userConfig = new JSONObject()
+                .put("name", "Android Engine")
+                .put("logs", new JSONObject().put("logLevel", "debug").put("maxProcessLogEntries", 1000))
+                .put("machine", new JSONObject().put("port", 33030).put("classes", new JSONArray().put("Portable").put("Phone")))
+                .put("processes", new JSONObject().put("acceptUserTasks", true));
+    }
+
+    @Benchmark
+    public JSONObject parse() throws JSONException {
+        return new JSONObject(defaultConfig);
+    }
+
+    @Benchmark
+    public JSONObject parseAndMerge() throws JSONException {
+        JSONObject config = new JSONObject(defaultConfig);
+        Configuration.mergeConfig(config, userConfig);
+        return config;
+    }
+}
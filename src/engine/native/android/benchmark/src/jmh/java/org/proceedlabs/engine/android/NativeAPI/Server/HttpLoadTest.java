@@ -0,0 +1,212 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.iki.elonen.NanoHTTPD.Method;
+
+/*
+ * both HTTP backends under many concurrent clients of a slow route, the universal part answers after a fixed delay:
+ *   ./gradlew :benchmark:loadTest [--args="<clients,clients,...> <delay ms> <seconds>"]
+ *
+ * every client sends GET requests on a keep-alive connection and reconnects after a 503 or a closed connection.
+ * reported per backend: answered requests per second, 200 / 503 / failed requests, latency of the 200s
+ * and the peak number of server threads
+ * */
+public class HttpLoadTest {
+    private static final int PORT = 8931;
+
+    public static void main(String[] args) throws Exception {
+        int[] clients = args.length > 0 ? parseList(args[0]) : new int[]{16, 128, 480};
+        long delay = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        ScheduledExecutorService answers = Executors.newScheduledThreadPool(2);
+        JSONArray answerArgs = new JSONArray().put("ok").put("0").put(200).put("text/plain");
+        Answer answer = Answer.of(new NativeRequest(new JSONArray().put("2").put("respond").put(answerArgs), null));
+        Server.universal = new Server.Universal() {
+            @Override
+            void send(NativeRequest serveRequest, String sessionID, JSONObject clientRequest) {
+                answers.schedule(() -> Server.sessions.complete(sessionID, answer), delay, TimeUnit.MILLISECONDS);
+            }
+        };
+        LinkedHashMap<Method, NativeRequest> methods = new LinkedHashMap<>();
+        JSONArray serveArgs = new JSONArray().put("get").put("/slow").put(new JSONObject());
+        methods.put(Method.GET, new NativeRequest(new JSONArray().put("1").put("serve").put(serveArgs), null));
+        Server.addPath("/slow", methods);
+
+        System.out.printf(Locale.US, "universal part answers after %d ms, %d s per run%n", delay, seconds);
+        System.out.printf(Locale.US, "%-10s %8s %10s %8s %8s %8s %8s %8s %8s%n",
+                "backend", "clients", "req/s", "200", "503", "failed", "p50 ms", "p99 ms", "threads");
+        for (int count : clients) {
+            for (String backend : new String[]{"nanohttpd", "nio"}) {
+                run(backend, count, seconds);
+            }
+        }
+        answers.shutdownNow();
+    }
+
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            values[i] = Integer.parseInt(parts[i].trim());
+        return values;
+    }
+
+    private static void run(String backend, int clients, long seconds) throws IOException, JSONException, InterruptedException {
+        ServerOptions options = new ServerOptions(new JSONObject().put("backend", backend));
+        HttpServer server = backend.equals("nio") ? new NioServer(PORT, options) : new Server(PORT, options);
+        server.start();
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Client[] running = new Client[clients];
+        for (int i = 0; i < clients; i++) {
+            running[i] = new Client(end);
+            running[i].start();
+        }
+        int peakThreads = 0;
+        while (System.nanoTime() < end) {
+            peakThreads = Math.max(peakThreads, countServerThreads());
+            Thread.sleep(100);
+        }
+        int ok = 0, unavailable = 0, failed = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (Client client : running) {
+            client.join();
+            ok += client.ok;
+            unavailable += client.unavailable;
+            failed += client.failed;
+            latencies.addAll(client.latencies);
+        }
+        server.stop();
+        Thread.sleep(500);
+
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        System.out.printf(Locale.US, "%-10s %8d %10.1f %8d %8d %8d %8.1f %8.1f %8d%n",
+                backend, clients, ok / (double) seconds, ok, unavailable, failed,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), peakThreads);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    // the accepting and connection threads of both backends
+    private static int countServerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("http") || thread.getName().startsWith("NanoHttpd"))
+                count++;
+        }
+        return count;
+    }
+
+    private static class Client extends Thread {
+        private static final byte[] REQUEST = "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        private static final AtomicInteger ids = new AtomicInteger();
+        private final long end;
+        final List<Long> latencies = new ArrayList<>();
+        int ok;
+        int unavailable;
+        int failed;
+        private boolean closed;
+
+        Client(long end) {
+            super("client-" + ids.incrementAndGet());
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < end) {
+                try (Socket socket = new Socket("localhost", PORT)) {
+                    socket.setSoTimeout(15000);
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    boolean open = true;
+                    while (open && System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        out.write(REQUEST);
+                        out.flush();
+                        int status = readResponse(in);
+                        if (status == 200) {
+                            ok++;
+                            latencies.add(System.nanoTime() - start);
+                        } else if (status == 503) {
+                            unavailable++;
+                            Thread.sleep(10);
+                        } else {
+                            failed++;
+                        }
+                        open = !closed;
+                    }
+                } catch (IOException e) {
+                    failed++;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // status code, -1 if the connection has been closed without a response
+        private int readResponse(InputStream in) throws IOException {
+            closed = true;
+            String statusLine = readLine(in);
+            if (statusLine == null)
+                return -1;
+            int contentLength = 0;
+            boolean close = false;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                String lower = line.toLowerCase(Locale.US);
+                if (lower.startsWith("content-length:"))
+                    contentLength = Integer.parseInt(lower.substring(15).trim());
+                else if (lower.startsWith("connection:") && lower.contains("close"))
+                    close = true;
+            }
+            for (int i = 0; i < contentLength; i++) {
+                if (in.read() < 0)
+                    return -1;
+            }
+            closed = close;
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0)
+                    return null;
+                if (c != '\r')
+                    line.append((char) c);
+            }
+            return line.toString();
+        }
+    }
+}
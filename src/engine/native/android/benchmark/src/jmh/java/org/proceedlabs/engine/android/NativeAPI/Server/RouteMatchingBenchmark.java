@@ -0,0 +1,77 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/*
+ * finding the served path of a client request, done by Server.serve for every HTTP request
+ * the routes are those served by the engine plus generated ones, to see how matching scales with their number
+ * */
+@State(Scope.Benchmark)
+public class RouteMatchingBenchmark {
+    private static final String[] ENGINE_ROUTES = {
+            "/machine", "/machine/:properties", "/configuration", "/logging", "/process", "/process/:definitionId",
+            "/process/:definitionId/versions", "/process/:definitionId/versions/:version", "/process/:definitionId/instance",
+            "/process/:definitionId/instance/:instanceID", "/process/:definitionId/instance/:instanceId/:instruction",
+            "/process/:definitionId/user-tasks/:fileName", "/process/:definitionId/script-tasks/:fileName",
+            "/process/:definitionId/images/:fileName", "/capabilities", "/capabilities/execute", "/tasklist/api",
+            "/tasklist/api/userTask", "/resources/process/:definitionId/images/:fileName", "/status",
+    };
+
+    @Param({"0", "100"})
+    public int additionalRoutes;
+
+    @Setup
+    public void setup() throws JSONException {
+        for (String path : new ArrayList<>(Server.paths.keySet())) {
+            Server.removePath(path);
+        }
+        for (String path : ENGINE_ROUTES) {
+            serve(path);
+        }
+        for (int i = 0; i < additionalRoutes; i++) {
+            serve("/generated/" + i + "/:id");
+        }
+    }
+
+    private static void serve(String path) throws JSONException {
+        JSONArray args = new JSONArray().put("get").put(path).put(new JSONObject().put("cors", true));
+        NativeRequest req = new NativeRequest(new JSONArray().put(path).put("serve").put(args), null);
+        LinkedHashMap<NanoHTTPD.Method, NativeRequest> methods = new LinkedHashMap<>();
+        methods.put(NanoHTTPD.Method.GET, req);
+        Server.addPath(path, methods);
+    }
+
+    @Benchmark
+    public Object staticPath() {
+        return Server.getSupportedMethodsByURL("/status");
+    }
+
+    @Benchmark
+    public Object parameterPath() {
+        return Server.getSupportedMethodsByURL("/process/_6c8a2f12/instance/_1d6e5b49-3b1f-4c1c-9c44-2c9dbbd0a5e1");
+    }
+
+    @Benchmark
+    public Object notFound() {
+        return Server.getSupportedMethodsByURL("/unknown/path/of/a/client");
+    }
+
+    @Benchmark
+    public JSONObject params() throws JSONException {
+        return Server.router.match("/process/_6c8a2f12/instance/_1d6e5b49-3b1f-4c1c-9c44-2c9dbbd0a5e1").getParams();
+    }
+}
@@ -0,0 +1,67 @@
+package org.proceedlabs.engine.android.NativeAPI.Server;
+
+import org.proceedlabs.engine.android.FormatAPI.NativeRequest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * the HTTP thread waiting for the answer of the universal part, which arrives on another thread (the "respond" task)
+ * sampled, so the report contains the p50/p99 of the handoff
+ *
+ * latch    Session, as used by Server.serve
+ * polling  the former loop, checking the answers every 10 ms
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionHandoffBenchmark {
+    private ExecutorService universal;
+    private Answer answer;
+    private final ConcurrentHashMap<String, Answer> answers = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setup() throws JSONException {
+        universal = Executors.newSingleThreadExecutor();
+        JSONArray args = new JSONArray().put("ok").put("0").put(200).put("text/plain");
+        answer = Answer.of(new NativeRequest(new JSONArray().put("1").put("respond").put(args), null));
+    }
+
+    @TearDown
+    public void tearDown() {
+        universal.shutdownNow();
+    }
+
+    @Benchmark
+    public Answer latch() throws InterruptedException {
+        Session waiting = new Session("0", null, Server.DEFAULT_TIMEOUT);
+        universal.execute(() -> waiting.complete(answer));
+        return waiting.await();
+    }
+
+    @Benchmark
+    public Answer polling() throws InterruptedException {
+        universal.execute(() -> answers.put("0", answer));
+        int sleepCyleCount = 0;
+        while (sleepCyleCount++ < 1000) {
+            Thread.sleep(10);
+            Answer uniResp = answers.remove("0");
+            if (uniResp != null)
+                return uniResp;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package org.proceedlabs.engine.android.Utility;
+
+import android.util.Base64;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/*
+ * the loop of ImageCompression.processImage: encode as JPEG with decreasing quality (steps of 5) until the target size is reached,
+ * followed by the Base64 encoding of the result, as done when the photo is sent as a string
+ * Bitmap.compress needs a device, the loop is run with the JPEG encoder of the JVM and in memory instead of temporary files
+ * */
+@State(Scope.Benchmark)
+public class ImageEncodeBenchmark {
+    @Param({"50", "150"})
+    public int maxSizeKB;
+
+    private BufferedImage image;
+    private byte[] jpeg;
+
+    @Setup
+    public void setup() throws IOException {
+        // a photo-like image: gradients with noise, about 500 KB at full quality
+        image = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int noise = random.nextInt(8);
+                image.setRGB(x, y, ((x / 4 + noise) & 0xff) << 16 | ((y / 3 + noise) & 0xff) << 8 | ((x + y) / 7 + noise) & 0xff);
+            }
+        }
+        jpeg = encode(100);
+    }
+
+    private byte[] encode(int detail) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(detail / 100f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] compressToTarget() throws IOException {
+        int detail = 100;
+        byte[] compressed;
+        do {
+            compressed = encode(detail);
+            detail -= 5;
+        } while (compressed.length / 1024 > maxSizeKB && detail > 0);
+        return compressed;
+    }
+
+    @Benchmark
+    public String base64() {
+        return Base64.encodeToString(jpeg, Base64.DEFAULT);
+    }
+}
@@ -0,0 +1,62 @@
+package androidx.core.app;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+
+public class NotificationCompat {
+    public static final int PRIORITY_HIGH = 1;
+
+    public static class Builder {
+        public Builder(Context context, String channelId) {
+        }
+
+        public Builder setContentTitle(CharSequence title) {
+            return this;
+        }
+
+        public Builder setContentText(CharSequence text) {
+            return this;
+        }
+
+        public Builder setSmallIcon(int icon) {
+            return this;
+        }
+
+        public Builder setPriority(int priority) {
+            return this;
+        }
+
+        public Builder setContentIntent(PendingIntent intent) {
+            return this;
+        }
+
+        public Builder addAction(int icon, CharSequence title, PendingIntent intent) {
+            return this;
+        }
+
+        public Builder setOngoing(boolean ongoing) {
+            return this;
+        }
+
+        public Builder setAutoCancel(boolean autoCancel) {
+            return this;
+        }
+
+        public Builder setCategory(String category) {
+            return this;
+        }
+
+        public Builder setStyle(Object style) {
+            return this;
+        }
+
+        public Builder setDefaults(int defaults) {
+            return this;
+        }
+
+        public Notification build() {
+            return null;
+        }
+    }
+}
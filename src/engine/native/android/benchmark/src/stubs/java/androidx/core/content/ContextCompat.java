@@ -0,0 +1,15 @@
+package androidx.core.content;
+
+import android.content.Context;
+
+import java.io.File;
+
+public class ContextCompat {
+    public static int checkSelfPermission(Context context, String permission) {
+        return 0;
+    }
+
+    public static File[] getExternalFilesDirs(Context context, String type) {
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+package org.proceedlabs.engine.android;
+
+/*
+ * the resources referenced by the app sources, the real class is generated by the Android build
+ * */
+public final class R {
+    public static final class id {
+        public static final int layout = 1;
+    }
+
+    public static final class layout {
+        public static final int activity_main = 1;
+    }
+
+    public static final class drawable {
+        public static final int ic_proceed = 1;
+    }
+}
@@ -0,0 +1,16 @@
+package org.proceedlabs.engine.android.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * marks the method of an IPCTask that serves the given (lower case) task names
+ * the method is public and takes the NativeRequest as its only parameter, it may be static
+ * */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface IPCHandler {
+    String[] value();
+}
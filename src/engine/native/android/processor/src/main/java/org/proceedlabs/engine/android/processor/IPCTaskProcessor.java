@@ -0,0 +1,196 @@
+package org.proceedlabs.engine.android.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/*
+ * Generates org.proceedlabs.engine.android.IPCTaskRegistry:
+ * - getTask(taskName): the IPCTask serving a task name, each task is constructed on its first use (holder class idiom)
+ * - dispatch(req): calls the @IPCHandler method of the task name directly, without the switch of the task
+ * - getPermissions(class) and PERMISSIONS: the @RequiresPermissions of the Tasks, without constructing them
+ * */
+public class IPCTaskProcessor extends AbstractProcessor {
+    private static final String PACKAGE = "org.proceedlabs.engine.android";
+    private static final String REGISTRY = "IPCTaskRegistry";
+    private static final String IPC_TASK = "org.proceedlabs.engine.android.FormatAPI.Interfaces.IPCTask";
+    private static final String NATIVE_REQUEST = "org.proceedlabs.engine.android.FormatAPI.NativeRequest";
+
+    private final Map<String, ExecutableElement> handlers = new TreeMap<>();
+    private final Map<String, String[]> permissions = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+    private boolean generated;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(IPCHandler.class.getCanonicalName(), RequiresPermissions.class.getCanonicalName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(IPCHandler.class)) {
+            collectHandler((ExecutableElement) element);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(RequiresPermissions.class)) {
+            permissions.put(binaryName((TypeElement) element), element.getAnnotation(RequiresPermissions.class).value());
+            originatingElements.add(element);
+        }
+        // all tasks are compiled together, the registry is written in the round that sees them
+        if (!generated && (!handlers.isEmpty() || !permissions.isEmpty())) {
+            generated = true;
+            try {
+                writeRegistry();
+            } catch (IOException e) {
+                error(null, "can not write " + REGISTRY + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void collectHandler(ExecutableElement method) {
+        TypeElement task = (TypeElement) method.getEnclosingElement();
+        TypeMirror ipcTask = processingEnv.getElementUtils().getTypeElement(IPC_TASK).asType();
+        if (!processingEnv.getTypeUtils().isSubtype(task.asType(), ipcTask)) {
+            error(method, "@IPCHandler methods must be declared in a subclass of IPCTask");
+            return;
+        }
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || !task.getModifiers().contains(Modifier.PUBLIC) || task.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(method, "@IPCHandler methods must be public members of a public, non-abstract class");
+            return;
+        }
+        if (method.getParameters().size() != 1 || !method.getParameters().get(0).asType().toString().equals(NATIVE_REQUEST)) {
+            error(method, "@IPCHandler methods take the NativeRequest as their only parameter");
+            return;
+        }
+        for (String taskName : method.getAnnotation(IPCHandler.class).value()) {
+            if (!taskName.equals(taskName.toLowerCase())) {
+                error(method, "task names are lower case, the names of requests are lower-cased: " + taskName);
+            } else if (handlers.containsKey(taskName)) {
+                error(method, "the task name " + taskName + " is already served by " + handlers.get(taskName).getEnclosingElement());
+            } else {
+                handlers.put(taskName, method);
+            }
+        }
+        originatingElements.add(method);
+    }
+
+    private void writeRegistry() throws IOException {
+        // one holder per task class, in the order of the task names
+        Map<String, String> holders = new LinkedHashMap<>();
+        Set<String> simpleNames = new HashSet<>();
+        for (ExecutableElement method : handlers.values()) {
+            String task = ((TypeElement) method.getEnclosingElement()).getQualifiedName().toString();
+            if (holders.containsKey(task))
+                continue;
+            String holder = method.getEnclosingElement().getSimpleName() + "Holder";
+            while (!simpleNames.add(holder))
+                holder = "_" + holder;
+            holders.put(task, holder);
+        }
+        Set<String> allPermissions = new LinkedHashSet<>();
+        for (String[] taskPermissions : permissions.values()) {
+            allPermissions.addAll(Arrays.asList(taskPermissions));
+        }
+
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE).append(";\n\n");
+        src.append("import ").append(IPC_TASK).append(";\n");
+        src.append("import ").append(NATIVE_REQUEST).append(";\n\n");
+        src.append("/*\n * generated by ").append(IPCTaskProcessor.class.getName()).append(" from the @IPCHandler methods and @RequiresPermissions classes, do not edit\n * */\n");
+        src.append("public final class ").append(REGISTRY).append(" {\n");
+        src.append("    public static final String[] TASK_NAMES = ").append(literal(handlers.keySet())).append(";\n");
+        src.append("    public static final String[] PERMISSIONS = ").append(literal(allPermissions)).append(";\n\n");
+        src.append("    private ").append(REGISTRY).append("() {\n    }\n\n");
+
+        for (Map.Entry<String, String> holder : holders.entrySet()) {
+            src.append("    private static final class ").append(holder.getValue()).append(" {\n");
+            src.append("        static final ").append(holder.getKey()).append(" INSTANCE = new ").append(holder.getKey()).append("();\n");
+            src.append("    }\n\n");
+        }
+
+        src.append("    // the task serving taskName, constructed on first use. null for unknown task names\n");
+        src.append("    public static IPCTask getTask(String taskName) {\n");
+        src.append("        switch (taskName) {\n");
+        for (Map.Entry<String, String> holder : holders.entrySet()) {
+            for (Map.Entry<String, ExecutableElement> handler : handlers.entrySet()) {
+                if (((TypeElement) handler.getValue().getEnclosingElement()).getQualifiedName().contentEquals(holder.getKey()))
+                    src.append("            case ").append(literal(handler.getKey())).append(":\n");
+            }
+            src.append("                return ").append(holder.getValue()).append(".INSTANCE;\n");
+        }
+        src.append("            default:\n                return null;\n        }\n    }\n\n");
+
+        src.append("    // calls the handler method of the task name, false for unknown task names\n");
+        src.append("    public static boolean dispatch(NativeRequest req) throws Exception {\n");
+        src.append("        switch (req.getTaskName()) {\n");
+        for (Map.Entry<String, ExecutableElement> handler : handlers.entrySet()) {
+            ExecutableElement method = handler.getValue();
+            String task = ((TypeElement) method.getEnclosingElement()).getQualifiedName().toString();
+            src.append("            case ").append(literal(handler.getKey())).append(":\n");
+            src.append("                ").append(method.getModifiers().contains(Modifier.STATIC) ? task : holders.get(task) + ".INSTANCE")
+                    .append('.').append(method.getSimpleName()).append("(req);\n");
+            src.append("                return true;\n");
+        }
+        src.append("            default:\n                return false;\n        }\n    }\n\n");
+
+        src.append("    public static String[] getPermissions(Class<?> taskClass) {\n");
+        src.append("        switch (taskClass.getName()) {\n");
+        for (Map.Entry<String, String[]> taskPermissions : permissions.entrySet()) {
+            src.append("            case ").append(literal(taskPermissions.getKey())).append(":\n");
+            src.append("                return new String[]").append(literal(Arrays.asList(taskPermissions.getValue()))).append(";\n");
+        }
+        src.append("            default:\n                return new String[0];\n        }\n    }\n}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(PACKAGE + "." + REGISTRY, originatingElements.toArray(new Element[0]));
+        try (Writer writer = file.openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    // the name returned by Class.getName(), nested classes are separated by $
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static String literal(Iterable<String> values) {
+        StringBuilder array = new StringBuilder("{");
+        for (String value : values) {
+            if (array.length() > 1)
+                array.append(", ");
+            array.append(literal(value));
+        }
+        return array.append('}').toString();
+    }
+
+    private static String literal(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
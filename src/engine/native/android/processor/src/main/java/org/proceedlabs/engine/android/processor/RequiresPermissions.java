@@ -0,0 +1,16 @@
+package org.proceedlabs.engine.android.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * the Android permissions a Task needs. they are known before the task is constructed,
+ * so all of them can be requested when the app starts
+ * */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface RequiresPermissions {
+    String[] value();
+}